@@ -0,0 +1,353 @@
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Асинхронный API поверх генераторов PostgresDDLCreator.
+ *
+ * - call(...) / table(...) — CompletableFuture на один объект; запрос выполняется
+ *   на переданном Executor с соединением из небольшого пула;
+ * - export(filter) — Flow.Publisher кусков DDL (типы и функции, таблицы,
+ *   последовательности, представления — в том же порядке, что и PostgresDDLCreator.main).
+ *   Каждый кусок читается из каталога только под запрошенный подписчиком спрос
+ *   (request(n)), так что медленный потребитель притормаживает выгрузку, а не копит
+ *   вывод в памяти.
+ *
+ * Каждая подписка держит одно соединение из пула от первого request до завершения
+ * или cancel. Любая ошибка — SQLException, исключение генератора или подписчика —
+ * завершает подписку через onError и возвращает соединение.
+ */
+public class AsyncDdlPublisher implements AutoCloseable {
+
+    /**
+     * Генератор, которому нужно соединение.
+     */
+    public interface CatalogCall<T> {
+        T apply(Connection conn) throws SQLException;
+    }
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final Executor executor;
+    private final Semaphore connectionBudget;
+    private final ConcurrentLinkedQueue<Connection> idle = new ConcurrentLinkedQueue<>();
+
+    public AsyncDdlPublisher(String url, String user, String password, int maxConnections, Executor executor) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.executor = executor;
+        this.connectionBudget = new Semaphore(maxConnections, true);
+    }
+
+    /* ========================================================================= */
+    /* CompletableFuture на объект                                               */
+    /* ========================================================================= */
+
+    /**
+     * Выполняет генератор асинхронно; SQLException приходит в future как CompletionException.
+     */
+    public <T> CompletableFuture<T> call(CatalogCall<T> call) {
+        return CompletableFuture.supplyAsync(() -> {
+            Connection conn = null;
+            try {
+                conn = acquire();
+                return call.apply(conn);
+            } catch (SQLException e) {
+                conn = discard(conn);
+                throw new CompletionException(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            } finally {
+                release(conn);
+            }
+        }, executor);
+    }
+
+    /**
+     * Полный DDL таблицы (CREATE TABLE, ограничения, DEFAULT, владелец).
+     */
+    public CompletableFuture<String> table(String schema, String table) {
+        return call(conn -> PostgresDDLCreator.ddlxExportTable(conn, schema, table));
+    }
+
+    /* ========================================================================= */
+    /* Flow.Publisher для выгрузки целиком                                       */
+    /* ========================================================================= */
+
+    /**
+     * Публикатор DDL таблиц, прошедших фильтр, и объектов их схем.
+     * Каждый подписчик получает собственную выгрузку.
+     */
+    public Flow.Publisher<String> export(ObjectFilter filter) {
+        return subscriber -> {
+            ExportSubscription subscription = new ExportSubscription(subscriber, filter);
+            subscriber.onSubscribe(subscription);
+        };
+    }
+
+    /**
+     * Подписка: куски производятся по одному на Executor, пока есть спрос.
+     * wip гарантирует, что одновременно работает не больше одного цикла выдачи.
+     */
+    private final class ExportSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super String> subscriber;
+        private final ObjectFilter filter;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile Throwable invalidRequest;
+        private boolean done;
+
+        private Connection conn;
+        private List<CatalogCall<String>> chunks;
+        private int next;
+
+        ExportSubscription(Flow.Subscriber<? super String> subscriber, ObjectFilter filter) {
+            this.subscriber = subscriber;
+            this.filter = filter;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                // правило 3.9 Reactive Streams: ошибка подписчику и завершение подписки
+                invalidRequest = new IllegalArgumentException("request(" + n + "): n must be positive");
+                schedule();
+                return;
+            }
+            demand.getAndUpdate(d -> d + n < 0 ? Long.MAX_VALUE : d + n);
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            schedule(); // вернуть соединение в пул
+        }
+
+        private void schedule() {
+            if (wip.getAndIncrement() == 0) {
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            int missed = 1;
+            do {
+                if (done) {
+                    return;
+                }
+                if (invalidRequest != null) {
+                    finish(invalidRequest);
+                    return;
+                }
+                if (cancelled) {
+                    finish(null);
+                    return;
+                }
+                try {
+                    if (chunks == null) {
+                        conn = acquire();
+                        chunks = plan(conn, filter);
+                    }
+                    while (demand.get() > 0 && !cancelled) {
+                        if (next == chunks.size()) {
+                            finish(null);
+                            subscriber.onComplete();
+                            return;
+                        }
+                        String chunk = chunks.get(next++).apply(conn);
+                        demand.decrementAndGet();
+                        subscriber.onNext(chunk);
+                    }
+                    if (next == chunks.size() && !cancelled) {
+                        finish(null);
+                        subscriber.onComplete();
+                        return;
+                    }
+                } catch (SQLException e) {
+                    conn = discard(conn);
+                    finish(e);
+                    return;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    finish(e);
+                    return;
+                } catch (Throwable e) {
+                    // ошибка генератора или исключение из onNext (правило 2.13):
+                    // подписка завершается, соединение возвращается в пул
+                    finish(e);
+                    return;
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        /**
+         * Освобождает соединение; при ошибке сообщает о ней подписчику.
+         */
+        private void finish(Throwable error) {
+            if (done) {
+                return;
+            }
+            done = true;
+            release(conn);
+            conn = null;
+            if (error != null) {
+                subscriber.onError(error);
+            }
+        }
+    }
+
+    /**
+     * План выгрузки в порядке PostgresDDLCreator.main: сначала типы (каждый — со своей схемой),
+     * функции и самостоятельные последовательности всех отобранных схем, затем по каждой
+     * схеме таблицы, остальное о последовательностях (OWNED BY, setval),
+     * функции со строковым типом таблицы в сигнатуре и представления. Таблицы отбираются одним запросом;
+     * сами куски читаются лениво.
+     */
+    private static List<CatalogCall<String>> plan(Connection conn, ObjectFilter filter) throws SQLException {
+        Map<String, List<String>> tablesBySchema = new LinkedHashMap<>();
+        for (String schema : PostgresDDLCreator.selectSchemas(conn, filter)) {
+            tablesBySchema.put(schema, new ArrayList<>());
+        }
+        for (String[] t : PostgresDDLCreator.selectTables(conn, filter)) {
+            tablesBySchema.computeIfAbsent(t[0], k -> new ArrayList<>()).add(t[1]);
+        }
+
+        List<CatalogCall<String>> chunks = new ArrayList<>();
+        for (String schema : PostgresDDLCreator.selectTypeSchemas(conn, filter)) {
+            chunks.add(c -> PostgresDDLCreator.ddlxCreateTypes(c, schema, filter));
+        }
+        for (String schema : tablesBySchema.keySet()) {
+            chunks.add(c -> PostgresDDLCreator.ddlxCreateFunctions(c, schema, false, filter));
+            chunks.add(c -> PostgresDDLCreator.ddlxCreateSequences(c, schema, filter, true));
+        }
+        for (Map.Entry<String, List<String>> entry : tablesBySchema.entrySet()) {
+            String schema = entry.getKey();
+            for (String table : entry.getValue()) {
+                chunks.add(c -> PostgresDDLCreator.ddlxExportTable(c, schema, table));
+            }
+            chunks.add(c -> PostgresDDLCreator.ddlxCreateSequences(c, schema, filter, false));
+            chunks.add(c -> PostgresDDLCreator.ddlxCreateFunctions(c, schema, true, filter));
+            chunks.add(c -> PostgresDDLCreator.ddlxCreateViews(c, schema, filter));
+        }
+        return chunks;
+    }
+
+    /* ========================================================================= */
+    /* Пул соединений                                                            */
+    /* ========================================================================= */
+
+    private Connection acquire() throws SQLException, InterruptedException {
+        connectionBudget.acquire();
+        Connection conn = idle.poll();
+        if (conn != null) {
+            return conn;
+        }
+        try {
+            return DriverManager.getConnection(url, user, password);
+        } catch (SQLException e) {
+            connectionBudget.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Возвращает соединение в пул.
+     */
+    private void release(Connection conn) {
+        if (conn != null) {
+            idle.add(conn);
+            connectionBudget.release();
+        }
+    }
+
+    /**
+     * Закрывает соединение после ошибки (оно может быть в неопределённом состоянии)
+     * и возвращает место в пуле. Возвращает null для удобства присваивания.
+     */
+    private Connection discard(Connection conn) {
+        if (conn != null) {
+            try {
+                conn.close();
+            } catch (SQLException e) {
+                // соединение уже не нужно
+            }
+            connectionBudget.release();
+        }
+        return null;
+    }
+
+    @Override
+    public void close() {
+        Connection conn;
+        while ((conn = idle.poll()) != null) {
+            try {
+                conn.close();
+            } catch (SQLException e) {
+                // закрываем остальные
+            }
+        }
+    }
+
+    /* ========================================================================= */
+    /* Пример использования                                                      */
+    /* ========================================================================= */
+    public static void main(String[] args) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try (AsyncDdlPublisher ddl = new AsyncDdlPublisher(
+                "jdbc:postgresql://localhost:5432/testdb", "postgres", "password", 4, pool)) {
+
+            System.out.println(ddl.table("public", "mytable").get());
+
+            // потребитель берёт по одному куску: следующий читается из каталога только после запроса
+            CountDownLatch finished = new CountDownLatch(1);
+            ddl.export(ObjectFilter.fromArgs(args)).subscribe(new Flow.Subscriber<String>() {
+                private Flow.Subscription subscription;
+
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    this.subscription = subscription;
+                    subscription.request(1);
+                }
+
+                @Override
+                public void onNext(String chunk) {
+                    System.out.print(chunk);
+                    subscription.request(1);
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    error.printStackTrace();
+                    finished.countDown();
+                }
+
+                @Override
+                public void onComplete() {
+                    finished.countDown();
+                }
+            });
+            finished.await();
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,266 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Отчёт о размерах таблиц рядом с DDL: для планирования миграций.
+ *
+ * По каждой отобранной таблице (тот же отбор, что у PostgresDDLCreator.selectTables):
+ * pg_total_relation_size, размер самой таблицы, TOAST и каждого индекса, reltuples
+ * и грубая оценка раздувания. Всё читается одним запросом, без вызовов по таблице.
+ *
+ * Оценка раздувания: relpages минус число страниц, нужное для reltuples строк
+ * средней ширины (сумма avg_width из pg_stats + заголовок кортежа и указатель).
+ * Для таблиц без статистики (не было ANALYZE) оценка пустая.
+ *
+ * Результат пишется двумя файлами рядом с DDL: <ddl>.capacity.csv и <ddl>.capacity.json.
+ */
+public class CapacityReport {
+
+    /**
+     * Колонки, по которым можно упорядочить отчёт.
+     */
+    public enum SortBy {
+        NAME("n.nspname, c.relname"),
+        TOTAL_BYTES("total_bytes DESC, n.nspname, c.relname"),
+        TABLE_BYTES("table_bytes DESC, n.nspname, c.relname"),
+        INDEX_BYTES("index_bytes DESC, n.nspname, c.relname"),
+        ROWS("reltuples DESC, n.nspname, c.relname"),
+        BLOAT_BYTES("bloat_bytes DESC NULLS LAST, n.nspname, c.relname");
+
+        final String orderBy;
+
+        SortBy(String orderBy) {
+            this.orderBy = orderBy;
+        }
+
+        /**
+         * Значение --capacity-sort (без учёта регистра); null — TOTAL_BYTES.
+         * Неизвестное значение — IllegalArgumentException со списком допустимых.
+         */
+        public static SortBy parse(String value) {
+            if (value == null) {
+                return TOTAL_BYTES;
+            }
+            for (SortBy sortBy : values()) {
+                if (sortBy.name().equalsIgnoreCase(value.trim())) {
+                    return sortBy;
+                }
+            }
+            throw new IllegalArgumentException("unknown --capacity-sort: " + value
+                    + " (expected one of " + Arrays.toString(values()) + ")");
+        }
+    }
+
+    /**
+     * Строка отчёта. Размеры в байтах; bloatBytes = -1, если оценить нельзя.
+     */
+    public static class Row {
+        public String schema;
+        public String table;
+        public String relkind;
+        public long rows;
+        public long totalBytes;
+        public long tableBytes;
+        public long toastBytes;
+        public long indexBytes;
+        public long bloatBytes;
+        /** Имена индексов и их размеры (в том же порядке). */
+        public final List<String> indexNames = new ArrayList<>();
+        public final List<Long> indexSizes = new ArrayList<>();
+    }
+
+    private final List<Row> rows;
+
+    private CapacityReport(List<Row> rows) {
+        this.rows = rows;
+    }
+
+    public List<Row> rows() {
+        return rows;
+    }
+
+    /**
+     * Собирает отчёт одним запросом по таблицам, прошедшим фильтр.
+     */
+    public static CapacityReport collect(Connection conn, ObjectFilter filter, SortBy sortBy) throws SQLException {
+        String sql =
+            "SELECT n.nspname, c.relname, c.relkind, " +
+            "       greatest(c.reltuples, 0)::bigint AS reltuples, " +
+            "       pg_total_relation_size(c.oid) AS total_bytes, " +
+            "       pg_relation_size(c.oid) AS table_bytes, " +
+            "       CASE WHEN c.reltoastrelid = 0 THEN 0 " +
+            "            ELSE pg_total_relation_size(c.reltoastrelid) END AS toast_bytes, " +
+            "       coalesce(ix.bytes, 0) AS index_bytes, " +
+            "       ix.names AS index_names, ix.sizes AS index_sizes, " +
+            "       CASE WHEN c.relpages > 0 AND c.reltuples > 0 AND w.width IS NOT NULL " +
+            "            THEN greatest(c.relpages - ceil(c.reltuples * (w.width + 28) " +
+            "                          / (current_setting('block_size')::int - 24)), 0)::bigint " +
+            "                 * current_setting('block_size')::bigint " +
+            "       END AS bloat_bytes " +
+            "FROM pg_class c " +
+            "JOIN pg_namespace n ON n.oid = c.relnamespace " +
+            "LEFT JOIN LATERAL ( " +
+            "    SELECT sum(pg_relation_size(i.indexrelid))::bigint AS bytes, " +
+            "           array_agg(ic.relname::text ORDER BY ic.relname) AS names, " +
+            "           array_agg(pg_relation_size(i.indexrelid) ORDER BY ic.relname) AS sizes " +
+            "      FROM pg_index i " +
+            "      JOIN pg_class ic ON ic.oid = i.indexrelid " +
+            "     WHERE i.indrelid = c.oid " +
+            ") ix ON true " +
+            "LEFT JOIN LATERAL ( " +
+            "    SELECT sum(s.avg_width) AS width " +
+            "      FROM pg_stats s " +
+            "     WHERE s.schemaname = n.nspname AND s.tablename = c.relname AND NOT s.inherited " +
+            ") w ON true " +
+            "WHERE " + PostgresDDLCreator.USER_SCHEMAS + " " +
+            (filter.hasRelkinds() ? "" : "  AND c.relkind IN ('r','p','m') ") +
+            filter.sql("c", "n") + " " +
+            "ORDER BY " + sortBy.orderBy;
+
+        List<Row> rows = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            filter.bind(ps, 1);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Row row = new Row();
+                    row.schema = rs.getString("nspname");
+                    row.table = rs.getString("relname");
+                    row.relkind = rs.getString("relkind");
+                    row.rows = rs.getLong("reltuples");
+                    row.totalBytes = rs.getLong("total_bytes");
+                    row.tableBytes = rs.getLong("table_bytes");
+                    row.toastBytes = rs.getLong("toast_bytes");
+                    row.indexBytes = rs.getLong("index_bytes");
+                    row.bloatBytes = rs.getLong("bloat_bytes");
+                    if (rs.wasNull()) {
+                        row.bloatBytes = -1;
+                    }
+
+                    Array names = rs.getArray("index_names");
+                    Array sizes = rs.getArray("index_sizes");
+                    if (names != null && sizes != null) {
+                        for (Object name : (Object[]) names.getArray()) {
+                            row.indexNames.add((String) name);
+                        }
+                        for (Object size : (Object[]) sizes.getArray()) {
+                            row.indexSizes.add(((Number) size).longValue());
+                        }
+                    }
+                    rows.add(row);
+                }
+            }
+        }
+        return new CapacityReport(rows);
+    }
+
+    /* ========================================================================= */
+    /* CSV и JSON                                                                */
+    /* ========================================================================= */
+
+    /**
+     * Пишет <ddlFile>.capacity.csv и <ddlFile>.capacity.json рядом с файлом DDL.
+     */
+    public void writeSidecars(Path ddlFile) throws IOException {
+        Path csv = ddlFile.resolveSibling(ddlFile.getFileName() + ".capacity.csv");
+        Path json = ddlFile.resolveSibling(ddlFile.getFileName() + ".capacity.json");
+        try (Writer out = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+            writeCsv(out);
+        }
+        try (Writer out = Files.newBufferedWriter(json, StandardCharsets.UTF_8)) {
+            writeJson(out);
+        }
+    }
+
+    /**
+     * CSV с заголовком; индексы — одной колонкой "имя=байты;имя=байты". Имя индекса
+     * с ';', '=' или '"' внутри колонки берётся в двойные кавычки (кавычки удваиваются),
+     * а сама колонка, как и любое поле, — по правилам CSV.
+     */
+    public void writeCsv(Writer out) throws IOException {
+        out.write("schema,table,relkind,rows,total_bytes,table_bytes,toast_bytes,index_bytes,bloat_bytes,indexes\n");
+        for (Row row : rows) {
+            StringBuilder indexes = new StringBuilder();
+            for (int i = 0; i < row.indexNames.size(); i++) {
+                if (i > 0) {
+                    indexes.append(';');
+                }
+                indexes.append(indexName(row.indexNames.get(i))).append('=').append(row.indexSizes.get(i));
+            }
+            out.write(csvField(row.schema) + "," + csvField(row.table) + "," + row.relkind + ","
+                    + row.rows + "," + row.totalBytes + "," + row.tableBytes + ","
+                    + row.toastBytes + "," + row.indexBytes + ","
+                    + (row.bloatBytes < 0 ? "" : String.valueOf(row.bloatBytes)) + ","
+                    + csvField(indexes.toString()) + "\n");
+        }
+    }
+
+    /**
+     * JSON-массив объектов; bloat_bytes = null, если оценить нельзя.
+     */
+    public void writeJson(Writer out) throws IOException {
+        out.write("[");
+        for (int r = 0; r < rows.size(); r++) {
+            Row row = rows.get(r);
+            out.write(r == 0 ? "\n" : ",\n");
+            out.write("  {\"schema\": " + jsonString(row.schema)
+                    + ", \"table\": " + jsonString(row.table)
+                    + ", \"relkind\": " + jsonString(row.relkind)
+                    + ", \"rows\": " + row.rows
+                    + ", \"total_bytes\": " + row.totalBytes
+                    + ", \"table_bytes\": " + row.tableBytes
+                    + ", \"toast_bytes\": " + row.toastBytes
+                    + ", \"index_bytes\": " + row.indexBytes
+                    + ", \"bloat_bytes\": " + (row.bloatBytes < 0 ? "null" : String.valueOf(row.bloatBytes))
+                    + ", \"indexes\": [");
+            for (int i = 0; i < row.indexNames.size(); i++) {
+                out.write((i > 0 ? ", " : "") + "{\"name\": " + jsonString(row.indexNames.get(i))
+                        + ", \"bytes\": " + row.indexSizes.get(i) + "}");
+            }
+            out.write("]}");
+        }
+        out.write(rows.isEmpty() ? "]\n" : "\n]\n");
+    }
+
+    private static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0
+                && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    /** Имя индекса внутри колонки indexes: в кавычках, если в нём есть ';', '=' или '"'. */
+    private static String indexName(String name) {
+        if (name.indexOf(';') < 0 && name.indexOf('=') < 0 && name.indexOf('"') < 0) {
+            return name;
+        }
+        return "\"" + name.replace("\"", "\"\"") + "\"";
+    }
+
+    private static String jsonString(String value) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (char ch : value.toCharArray()) {
+            switch (ch) {
+                case '"':  sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (ch < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) ch));
+                    } else {
+                        sb.append(ch);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
@@ -0,0 +1,87 @@
+import java.lang.management.ManagementFactory;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Сравнение загрузчиков CompactCatalog: ResultSet (load) против двоичного COPY (loadBinaryCopy).
+ *
+ * Каждый загрузчик прогревается, затем запускается заданное число раз; печатаются
+ * медиана и минимум времени и объём памяти, выделенной потоком за один прогон
+ * (com.sun.management.ThreadMXBean). Перед замером проверяется, что обе модели
+ * рисуют одинаковые определения столбцов.
+ *
+ * Каталог на 1 млн столбцов: java SyntheticCatalogGenerator <url> <user> <password> 20000 50
+ * Запуск: java CatalogLoadBenchmark jdbc:postgresql://localhost:5432/testdb postgres password ddlx_load 5
+ */
+public class CatalogLoadBenchmark {
+
+    private interface Loader {
+        CompactCatalog load(Connection conn) throws SQLException;
+    }
+
+    public static void main(String[] args) throws SQLException {
+        String url      = args.length > 0 ? args[0] : "jdbc:postgresql://localhost:5432/testdb";
+        String user     = args.length > 1 ? args[1] : "postgres";
+        String password = args.length > 2 ? args[2] : "password";
+        String schema   = args.length > 3 ? args[3] : "ddlx_load";
+        int runs        = args.length > 4 ? Integer.parseInt(args[4]) : 5;
+
+        ObjectFilter filter = new ObjectFilter();
+        Loader resultSet = conn -> CompactCatalog.load(conn, schema, filter);
+        Loader binaryCopy = conn -> CompactCatalog.loadBinaryCopy(conn, schema, filter);
+
+        try (Connection conn = DriverManager.getConnection(url, user, password)) {
+            CompactCatalog a = resultSet.load(conn);
+            CompactCatalog b = binaryCopy.load(conn);
+            verifySame(a, b);
+            System.out.printf("-- таблиц: %d, столбцов: %d%n", a.tableCount(), a.columnCount());
+
+            measure("ResultSet  ", conn, resultSet, runs);
+            measure("binary COPY", conn, binaryCopy, runs);
+        }
+    }
+
+    private static void measure(String name, Connection conn, Loader loader, int runs) throws SQLException {
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        loader.load(conn); // прогрев
+
+        List<Long> millis = new ArrayList<>();
+        long allocated = 0;
+        for (int i = 0; i < runs; i++) {
+            long bytesBefore = threads.getThreadAllocatedBytes(thread);
+            long t0 = System.nanoTime();
+            loader.load(conn);
+            millis.add((System.nanoTime() - t0) / 1_000_000);
+            allocated += threads.getThreadAllocatedBytes(thread) - bytesBefore;
+        }
+
+        Collections.sort(millis);
+        System.out.printf("%s  медиана %d мс, минимум %d мс, выделено %d МБ за прогон%n",
+                name, millis.get(millis.size() / 2), millis.get(0), allocated / runs / (1024 * 1024));
+    }
+
+    /**
+     * Обе модели должны давать одинаковый DDL столбцов для каждой таблицы
+     * (оба запроса упорядочены по relname, attnum, так что номера таблиц совпадают).
+     */
+    private static void verifySame(CompactCatalog a, CompactCatalog b) {
+        if (a.tableCount() != b.tableCount() || a.columnCount() != b.columnCount()) {
+            throw new IllegalStateException("catalog size differs: "
+                    + a.tableCount() + "/" + a.columnCount() + " vs " + b.tableCount() + "/" + b.columnCount());
+        }
+        for (int t = 0; t < a.tableCount(); t++) {
+            StringBuilder left = new StringBuilder();
+            StringBuilder right = new StringBuilder();
+            a.appendColumnDefinitions(t, left);
+            b.appendColumnDefinitions(t, right);
+            if (!a.tableName(t).equals(b.tableName(t)) || !left.toString().equals(right.toString())) {
+                throw new IllegalStateException("column definitions differ for " + a.tableName(t));
+            }
+        }
+    }
+}
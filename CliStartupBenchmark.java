@@ -0,0 +1,63 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Замер времени до первого байта DDL у CLI (native image или java -cp ...).
+ *
+ * Запускает команду заданное число раз и меряет время от старта процесса до первого
+ * байта в его stdout (соединение с базой, запросы к каталогу и рендеринг — внутри).
+ * Печатает min / медиану / p95 и завершается с кодом 1, если медиана выше порога.
+ *
+ * Запуск: java CliStartupBenchmark 50 50 ./ddlx --url=jdbc:postgresql://localhost:5432/testdb public.mytable
+ *         (число запусков, порог в мс, затем команда с аргументами)
+ */
+public class CliStartupBenchmark {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int runs = Integer.parseInt(args[0]);
+        long thresholdMs = Long.parseLong(args[1]);
+        List<String> command = Arrays.asList(args).subList(2, args.length);
+
+        List<Long> samples = new ArrayList<>();
+        for (int i = 0; i < runs; i++) {
+            long started = System.nanoTime();
+            Process process = new ProcessBuilder(command)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+            long firstByteNanos = -1;
+            try (InputStream out = process.getInputStream()) {
+                if (out.read() >= 0) {
+                    firstByteNanos = System.nanoTime() - started;
+                }
+                byte[] buf = new byte[8192];
+                while (out.read(buf) >= 0) {
+                    // дочитываем вывод, чтобы процесс не встал на полном буфере
+                }
+            }
+            int exit = process.waitFor();
+            if (exit != 0 || firstByteNanos < 0) {
+                System.err.println("run " + i + ": exit code " + exit + ", no output");
+                System.exit(2);
+            }
+            samples.add(firstByteNanos / 1_000_000);
+        }
+
+        Collections.sort(samples);
+        long median = samples.get(samples.size() / 2);
+        long p95 = samples.get(Math.min(samples.size() - 1, (int) Math.ceil(samples.size() * 0.95) - 1));
+        System.out.println("runs:   " + runs);
+        System.out.println("min:    " + samples.get(0) + " ms");
+        System.out.println("median: " + median + " ms");
+        System.out.println("p95:    " + p95 + " ms");
+
+        if (median > thresholdMs) {
+            System.out.println("FAIL: median time to first DDL byte is above " + thresholdMs + " ms");
+            System.exit(1);
+        }
+        System.out.println("OK: median time to first DDL byte is within " + thresholdMs + " ms");
+    }
+}
@@ -0,0 +1,461 @@
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyOut;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Компактная модель столбцов всей схемы для bulk-режима.
+ *
+ * Вместо List<String> с готовыми объявлениями храним столбцы колонками (массивы
+ * примитивов): имя — индекс в словаре, где каждая строка лежит один раз, тип — индекс
+ * в списке различных пар (OID, typmod), признаки — битовая маска. В массивах на столбец
+ * 9 байт, но ёмкость растёт удвоением, и к ним добавляются словарь имён и индекс таблиц:
+ * замер удержанного heap после load (SyntheticCatalogGenerator, 3429 таблиц,
+ * 177735 столбцов, OpenJDK 17) — 2.6 МБ, около 15 байт на столбец, т.е. порядка
+ * 15–20 МБ на 1M столбцов. Имена типов рисуются через TypeNames одним запросом
+ * на все различные пары после загрузки.
+ *
+ * Загружается одним запросом (PostgresDDLCreator.bulkColumnsSql), рендерит объявления
+ * столбцов прямо в переданный StringBuilder — в том же виде, что и getColumnDefinitions.
+ * Секций (PG 10+) в модели нет, tableIndex для них вернёт -1: их столбцы, как и
+ * у getColumnDefinitions, берутся от родителя.
+ */
+public class CompactCatalog {
+
+    private static final int NONE = -1;
+
+    private static final byte NOT_NULL          = 1;
+    private static final byte IDENTITY_ALWAYS   = 1 << 1;
+    private static final byte IDENTITY_DEFAULT  = 1 << 2;
+    private static final byte SERIAL            = 1 << 3;
+
+    /* --- таблицы: имя и диапазон столбцов [colStart[i], colStart[i + 1]) --- */
+    private int tableCount;
+    private int[] tableName = new int[64];
+    private int[] colStart = new int[65];
+
+    /* --- столбцы --- */
+    private int columnCount;
+    private int[] colName = new int[1024];
+    private int[] colType = new int[1024];
+    private byte[] flags = new byte[1024];
+
+    /** Выражения вычисляемых столбцов (PG 12+) — редкость, поэтому отдельно. */
+    private final Map<Integer, String> generated = new HashMap<>();
+
+    /** Имена таблиц и столбцов, уже экранированные quoteIdentifier. */
+    private final Dictionary names = new Dictionary();
+    /** Различные пары (OID типа, typmod) — TypeNames.key — и их имена после загрузки. */
+    private final Map<Long, Integer> typeIds = new HashMap<>();
+    private final List<Long> typeKeys = new ArrayList<>();
+    private String[] typeNames;
+
+    private final Map<String, Integer> tableIndex = new HashMap<>();
+
+    /**
+     * Загружает столбцы всех таблиц схемы одним запросом.
+     */
+    public static CompactCatalog load(Connection conn, String schema) throws SQLException {
+        return load(conn, schema, ObjectFilter.all());
+    }
+
+    /**
+     * Загружает столбцы только тех таблиц схемы, что прошли фильтр (отбор — на сервере).
+     */
+    public static CompactCatalog load(Connection conn, String schema, ObjectFilter filter) throws SQLException {
+        CompactCatalog catalog = new CompactCatalog();
+
+        // pgjdbc читает порциями (fetchSize) только внутри транзакции; в режиме autocommit
+        // весь результат сначала буферизуется целиком, что и съедает выигрыш по памяти
+        boolean autoCommit = conn.getAutoCommit();
+        if (autoCommit) {
+            conn.setAutoCommit(false);
+        }
+        try (PreparedStatement ps = conn.prepareStatement(PostgresDDLCreator.bulkColumnsSql(conn, filter))) {
+            ps.setString(1, schema);
+            filter.bind(ps, 2);
+            ps.setFetchSize(10_000);
+            try (ResultSet rs = ps.executeQuery()) {
+                String currentTable = null;
+                while (rs.next()) {
+                    String table = rs.getString("table_name");
+                    if (!table.equals(currentTable)) {
+                        catalog.startTable(table);
+                        currentTable = table;
+                    }
+                    catalog.addColumn(rs);
+                }
+            }
+        } finally {
+            if (autoCommit) {
+                conn.setAutoCommit(true); // завершает транзакцию чтения
+            }
+        }
+        catalog.finish(conn);
+        return catalog;
+    }
+
+    /**
+     * Закрывает последнюю таблицу и одним запросом рисует имена всех различных типов.
+     */
+    private void finish(Connection conn) throws SQLException {
+        colStart[tableCount] = columnCount;
+
+        TypeNames names = TypeNames.forConnection(conn);
+        names.resolve(typeKeys);
+        typeNames = new String[typeKeys.size()];
+        for (int i = 0; i < typeNames.length; i++) {
+            long key = typeKeys.get(i);
+            typeNames[i] = names.name(key >>> 32, (int) key);
+        }
+    }
+
+    /* ========================================================================= */
+    /* Загрузка через COPY ... (FORMAT binary)                                   */
+    /* ========================================================================= */
+
+    /**
+     * То же, что load, но через COPY (SELECT ...) TO STDOUT (FORMAT binary) и CopyManager:
+     * без ResultSet и объекта на каждое поле. Признаки столбца собираются в битовую маску
+     * на сервере, поток разбирается прямо в массивы модели из одного переиспользуемого буфера,
+     * а имя таблицы сравнивается побайтно с предыдущим и превращается в строку только
+     * на границе таблиц. Для снимков всего каталога (см. CatalogLoadBenchmark).
+     *
+     * Загружается то же, что и в load: столбцы (pg_class, pg_attribute, pg_attrdef, pg_depend).
+     * Ограничения (pg_constraint) в компактной модели не хранятся и по-прежнему
+     * рендерятся ddlxCreateConstraints по таблице.
+     */
+    public static CompactCatalog loadBinaryCopy(Connection conn, String schema, ObjectFilter filter) throws SQLException {
+        String sql =
+            "COPY (SELECT s.table_name, s.column_name, s.type_oid, s.type_mod, " +
+            "             (CASE WHEN s.is_nullable = 'NO' THEN " + NOT_NULL + " ELSE 0 END " +
+            "              | CASE s.identity_generation WHEN 'ALWAYS' THEN " + IDENTITY_ALWAYS +
+            "                                           WHEN 'BY DEFAULT' THEN " + IDENTITY_DEFAULT + " ELSE 0 END " +
+            "              | CASE WHEN s.is_serial THEN " + SERIAL + " ELSE 0 END)::int4 AS flags, " +
+            "             s.generation_expression " +
+            "        FROM (" + PostgresDDLCreator.bulkColumnsInlineSql(conn, schema, filter) + ") s " +
+            "       ORDER BY s.table_name, s.attnum) " +
+            "TO STDOUT (FORMAT binary)";
+
+        CompactCatalog catalog = new CompactCatalog();
+        BinaryCopyParser parser = catalog.new BinaryCopyParser();
+
+        CopyOut copy = conn.unwrap(PGConnection.class).getCopyAPI().copyOut(sql);
+        try {
+            byte[] chunk;
+            while ((chunk = copy.readFromCopy()) != null) {
+                parser.feed(chunk);
+            }
+            if (!parser.finished) {
+                throw new SQLException("binary COPY stream ended without trailer");
+            }
+        } finally {
+            // при ошибке разбора соединение иначе осталось бы в состоянии COPY OUT
+            if (copy.isActive()) {
+                copy.cancelCopy();
+            }
+        }
+
+        catalog.finish(conn);
+        return catalog;
+    }
+
+    /**
+     * Разбор двоичного формата COPY: заголовок "PGCOPY\n\377\r\n\0", флаги, расширение;
+     * затем кортежи: int16 число полей (-1 — конец), для каждого int32 длина (-1 — NULL)
+     * и байты значения. Порции CopyData могут резать кортеж где угодно, поэтому
+     * неразобранный хвост остаётся в буфере до следующей порции.
+     */
+    private final class BinaryCopyParser {
+        private static final int HEADER_LENGTH = 11 + 4 + 4;
+        private static final int FIELDS = 6;
+
+        private byte[] buf = new byte[64 * 1024];
+        private int start;
+        private int end;
+        private boolean headerRead;
+        private boolean finished;
+
+        /** Имя текущей таблицы в байтах (для сравнения без создания строк). */
+        private byte[] currentTable = new byte[64];
+        private int currentTableLength = -1;
+
+        void feed(byte[] chunk) throws SQLException {
+            append(chunk);
+            if (!headerRead) {
+                if (end - start < HEADER_LENGTH) {
+                    return;
+                }
+                int extension = readInt(start + 15);
+                if (end - start < HEADER_LENGTH + extension) {
+                    return;
+                }
+                if (buf[start] != 'P' || buf[start + 1] != 'G' || buf[start + 5] != 'Y') {
+                    throw new SQLException("not a binary COPY stream");
+                }
+                start += HEADER_LENGTH + extension;
+                headerRead = true;
+            }
+            while (!finished && parseTuple()) {
+                // разбираем, пока в буфере есть целые кортежи
+            }
+        }
+
+        private void append(byte[] chunk) {
+            if (end + chunk.length > buf.length) {
+                // сдвигаем хвост в начало; растём, только если кортеж не помещается
+                int tail = end - start;
+                if (tail + chunk.length > buf.length) {
+                    buf = Arrays.copyOf(Arrays.copyOfRange(buf, start, end), Math.max(buf.length * 2, tail + chunk.length));
+                } else {
+                    System.arraycopy(buf, start, buf, 0, tail);
+                }
+                start = 0;
+                end = tail;
+            }
+            System.arraycopy(chunk, 0, buf, end, chunk.length);
+            end += chunk.length;
+        }
+
+        /**
+         * Разбирает один кортеж, если он целиком в буфере.
+         */
+        private boolean parseTuple() throws SQLException {
+            if (end - start < 2) {
+                return false;
+            }
+            short fields = readShort(start);
+            if (fields == -1) {
+                finished = true;
+                start += 2;
+                return false;
+            }
+            if (fields != FIELDS) {
+                throw new SQLException("unexpected field count in COPY stream: " + fields);
+            }
+
+            // сначала убеждаемся, что кортеж пришёл целиком, и запоминаем смещения полей
+            int[] offsets = fieldOffsets;
+            int p = start + 2;
+            for (int f = 0; f < FIELDS; f++) {
+                if (end - p < 4) {
+                    return false;
+                }
+                int len = readInt(p);
+                offsets[f * 2] = p + 4;
+                offsets[f * 2 + 1] = len;
+                p += 4 + Math.max(len, 0);
+                if (p > end) {
+                    return false;
+                }
+            }
+
+            int tableOff = offsets[0];
+            int tableLen = offsets[1];
+            if (!sameTable(tableOff, tableLen)) {
+                rememberTable(tableOff, tableLen);
+                startTable(new String(buf, tableOff, tableLen, StandardCharsets.UTF_8));
+            }
+
+            String column = new String(buf, offsets[2], offsets[3], StandardCharsets.UTF_8);
+            long typeOid = readLong(offsets[4]);
+            int typeMod = readInt(offsets[6]);
+            byte f = (byte) readInt(offsets[8]);
+            String generatedExpr = offsets[11] < 0 ? null
+                : new String(buf, offsets[10], offsets[11], StandardCharsets.UTF_8);
+            addColumn(column, typeOid, typeMod, f, generatedExpr);
+
+            start = p;
+            return true;
+        }
+
+        /** Смещение и длина каждого поля текущего кортежа (переиспользуется). */
+        private final int[] fieldOffsets = new int[FIELDS * 2];
+
+        private boolean sameTable(int off, int len) {
+            if (len != currentTableLength) {
+                return false;
+            }
+            for (int i = 0; i < len; i++) {
+                if (buf[off + i] != currentTable[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void rememberTable(int off, int len) {
+            if (currentTable.length < len) {
+                currentTable = new byte[len];
+            }
+            System.arraycopy(buf, off, currentTable, 0, len);
+            currentTableLength = len;
+        }
+
+        private short readShort(int p) {
+            return (short) (((buf[p] & 0xFF) << 8) | (buf[p + 1] & 0xFF));
+        }
+
+        private int readInt(int p) {
+            return ((buf[p] & 0xFF) << 24) | ((buf[p + 1] & 0xFF) << 16)
+                 | ((buf[p + 2] & 0xFF) << 8) | (buf[p + 3] & 0xFF);
+        }
+
+        private long readLong(int p) {
+            return ((long) readInt(p) << 32) | (readInt(p + 4) & 0xFFFFFFFFL);
+        }
+    }
+
+    private void startTable(String table) {
+        if (tableCount == tableName.length) {
+            tableName = Arrays.copyOf(tableName, tableCount * 2);
+            colStart = Arrays.copyOf(colStart, tableCount * 2 + 1);
+        }
+        tableIndex.put(table, tableCount);
+        tableName[tableCount] = names.id(PostgresDDLCreator.quoteIdentifier(table));
+        colStart[tableCount] = columnCount;
+        tableCount++;
+    }
+
+    private void addColumn(ResultSet rs) throws SQLException {
+        byte f = 0;
+        if ("NO".equals(rs.getString("is_nullable"))) {
+            f |= NOT_NULL;
+        }
+        String identityGen = rs.getString("identity_generation");
+        if ("ALWAYS".equals(identityGen)) {
+            f |= IDENTITY_ALWAYS;
+        } else if ("BY DEFAULT".equals(identityGen)) {
+            f |= IDENTITY_DEFAULT;
+        }
+        if (rs.getBoolean("is_serial")) {
+            f |= SERIAL;
+        }
+        addColumn(rs.getString("column_name"), rs.getLong("type_oid"), rs.getInt("type_mod"), f,
+                  rs.getString("generation_expression"));
+    }
+
+    private void addColumn(String name, long typeOid, int typeMod, byte f, String generatedExpr) {
+        if (columnCount == colName.length) {
+            int n = columnCount * 2;
+            colName = Arrays.copyOf(colName, n);
+            colType = Arrays.copyOf(colType, n);
+            flags = Arrays.copyOf(flags, n);
+        }
+        int i = columnCount++;
+
+        colName[i] = names.id(PostgresDDLCreator.quoteIdentifier(name));
+        colType[i] = typeId(TypeNames.key(typeOid, typeMod));
+        flags[i] = f;
+        if (generatedExpr != null) {
+            generated.put(i, generatedExpr);
+        }
+    }
+
+    private int typeId(long key) {
+        Integer id = typeIds.get(key);
+        if (id == null) {
+            id = typeKeys.size();
+            typeKeys.add(key);
+            typeIds.put(key, id);
+        }
+        return id;
+    }
+
+    /* ========================================================================= */
+    /* Доступ и рендеринг                                                        */
+    /* ========================================================================= */
+
+    public int tableCount() {
+        return tableCount;
+    }
+
+    public int columnCount() {
+        return columnCount;
+    }
+
+    /**
+     * Имя таблицы t (уже экранированное).
+     */
+    public String tableName(int t) {
+        return names.get(tableName[t]);
+    }
+
+    /**
+     * Номер таблицы по имени или -1.
+     */
+    public int tableIndex(String table) {
+        Integer i = tableIndex.get(table);
+        return i == null ? NONE : i;
+    }
+
+    /**
+     * Дописывает в ddl объявления столбцов таблицы t — по одному на строку,
+     * как в теле CREATE TABLE у PostgresDDLCreator.ddlxCreateTable.
+     */
+    public void appendColumnDefinitions(int t, StringBuilder ddl) {
+        int from = colStart[t];
+        int to = colStart[t + 1];
+        for (int i = from; i < to; i++) {
+            ddl.append("\n    ").append(names.get(colName[i])).append(' ');
+            appendColumnType(i, ddl);
+
+            byte f = flags[i];
+            if ((f & IDENTITY_ALWAYS) != 0) {
+                ddl.append(" GENERATED ALWAYS AS IDENTITY");
+            } else if ((f & IDENTITY_DEFAULT) != 0) {
+                ddl.append(" GENERATED BY DEFAULT AS IDENTITY");
+            } else if ((f & SERIAL) == 0 && generated.containsKey(i)) {
+                ddl.append(" GENERATED ALWAYS AS (").append(generated.get(i)).append(") STORED");
+            }
+            if ((f & NOT_NULL) != 0) {
+                ddl.append(" NOT NULL");
+            }
+            if (i < to - 1) {
+                ddl.append(',');
+            }
+        }
+    }
+
+    /**
+     * Имя типа из кэша + замена на SERIAL, как в getColumnDefinitions.
+     */
+    private void appendColumnType(int i, StringBuilder ddl) {
+        String typeName = typeNames[colType[i]];
+        byte f = flags[i];
+
+        if ((f & (IDENTITY_ALWAYS | IDENTITY_DEFAULT)) == 0 && (f & SERIAL) != 0) {
+            ddl.append(PostgresDDLCreator.serialTypeFor(typeKeys.get(colType[i]) >>> 32, typeName));
+        } else {
+            ddl.append(typeName);
+        }
+    }
+
+    /**
+     * Словарь строк: каждая различная строка хранится один раз, снаружи — int-индекс.
+     */
+    private static class Dictionary {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        int id(String value) {
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = values.size();
+                values.add(value);
+                ids.put(value, id);
+            }
+            return id;
+        }
+
+        String get(int id) {
+            return values.get(id);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+import org.postgresql.PGConnection;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Непрерывный захват изменений DDL вместо периодической полной выгрузки.
+ *
+ * install() ставит в базу event trigger на ddl_command_end и sql_drop, который пишет
+ * OID изменённых таблиц в очередь ddlx_watch.ddl_queue и шлёт NOTIFY ddlx_watch.
+ * run() слушает уведомления (с опросом очереди по таймауту на случай потерянного NOTIFY),
+ * перерисовывает только изменённые таблицы (ddlxCreateTable / ddlxCreateConstraints)
+ * и представления (ddlxCreateView) и отдаёт каждое изменение событием Delta.
+ * Из очереди удаляются ровно прочитанные записи: id, выданный транзакции, которая
+ * зафиксировалась позже чтения, может быть меньше прочитанных и обработается в следующий раз.
+ *
+ * Установка event trigger требует прав суперпользователя.
+ *
+ * Запуск: java DdlWatcher jdbc:postgresql://localhost:5432/testdb postgres password [install]
+ */
+public class DdlWatcher {
+
+    private static final String CHANNEL = "ddlx_watch";
+
+    /**
+     * Изменение одной таблицы: новый DDL либо удаление.
+     */
+    public static class Delta {
+        public final long queueId;
+        public final String kind;     // "UPSERT" или "DROP"
+        public final String schema;
+        public final String table;    // таблица или представление; для DROP — object_identity из sql_drop
+        public final String ddl;      // для DROP — null
+
+        Delta(long queueId, String kind, String schema, String table, String ddl) {
+            this.queueId = queueId;
+            this.kind = kind;
+            this.schema = schema;
+            this.table = table;
+            this.ddl = ddl;
+        }
+    }
+
+    private final Connection conn;
+    private final long pollIntervalMs;
+    private volatile boolean running = true;
+
+    public DdlWatcher(Connection conn, long pollIntervalMs) {
+        this.conn = conn;
+        this.pollIntervalMs = pollIntervalMs;
+    }
+
+    /* ========================================================================= */
+    /* Установка event trigger                                                   */
+    /* ========================================================================= */
+
+    /**
+     * Создаёт очередь, функцию и event trigger'ы. Повторный вызов безопасен.
+     * В очередь пишется OID таблицы, к которой относится изменение
+     * (для индексов, ограничений, триггеров и DEFAULT — их таблица).
+     */
+    public static void install(Connection conn) throws SQLException {
+        String relidExpr =
+            "CASE WHEN r.classid = 'pg_class'::regclass " +
+            "          THEN coalesce((SELECT indrelid FROM pg_index WHERE indexrelid = r.objid), r.objid) " +
+            "     WHEN r.classid = 'pg_constraint'::regclass " +
+            "          THEN (SELECT conrelid FROM pg_constraint WHERE oid = r.objid) " +
+            "     WHEN r.classid = 'pg_trigger'::regclass " +
+            "          THEN (SELECT tgrelid FROM pg_trigger WHERE oid = r.objid) " +
+            "     WHEN r.classid = 'pg_attrdef'::regclass " +
+            "          THEN (SELECT adrelid FROM pg_attrdef WHERE oid = r.objid) " +
+            "     WHEN r.classid = 'pg_policy'::regclass " +
+            "          THEN (SELECT polrelid FROM pg_policy WHERE oid = r.objid) " +
+            "END";
+
+        String[] ddl = {
+            "CREATE SCHEMA IF NOT EXISTS ddlx_watch",
+
+            "CREATE TABLE IF NOT EXISTS ddlx_watch.ddl_queue (" +
+            "  id bigserial PRIMARY KEY, " +
+            "  changed_at timestamptz NOT NULL DEFAULT now(), " +
+            "  relid oid, " +
+            "  command_tag text, " +
+            "  object_type text, " +
+            "  schema_name text, " +
+            "  object_identity text, " +
+            "  dropped boolean NOT NULL DEFAULT false)",
+
+            "CREATE OR REPLACE FUNCTION ddlx_watch.log_ddl() RETURNS event_trigger " +
+            "LANGUAGE plpgsql AS $$ " +
+            "BEGIN " +
+            "  INSERT INTO ddlx_watch.ddl_queue (relid, command_tag, object_type, schema_name, object_identity) " +
+            "  SELECT " + relidExpr + ", r.command_tag, r.object_type, r.schema_name, r.object_identity " +
+            "    FROM pg_event_trigger_ddl_commands() r " +
+            "   WHERE r.schema_name IS DISTINCT FROM 'ddlx_watch'; " +
+            "  IF FOUND THEN PERFORM pg_notify('" + CHANNEL + "', ''); END IF; " +
+            "END $$",
+
+            "CREATE OR REPLACE FUNCTION ddlx_watch.log_drop() RETURNS event_trigger " +
+            "LANGUAGE plpgsql AS $$ " +
+            "BEGIN " +
+            "  INSERT INTO ddlx_watch.ddl_queue (relid, command_tag, object_type, schema_name, object_identity, dropped) " +
+            "  SELECT r.objid, tg_tag, r.object_type, r.schema_name, r.object_identity, true " +
+            "    FROM pg_event_trigger_dropped_objects() r " +
+            "   WHERE r.object_type IN ('table', 'foreign table', 'view', 'materialized view') " +
+            "     AND r.schema_name IS DISTINCT FROM 'ddlx_watch' " +
+            "     AND NOT r.is_temporary; " +
+            "  IF FOUND THEN PERFORM pg_notify('" + CHANNEL + "', ''); END IF; " +
+            "END $$",
+
+            "DROP EVENT TRIGGER IF EXISTS ddlx_watch_ddl",
+            "CREATE EVENT TRIGGER ddlx_watch_ddl ON ddl_command_end EXECUTE PROCEDURE ddlx_watch.log_ddl()",
+            "DROP EVENT TRIGGER IF EXISTS ddlx_watch_drop",
+            "CREATE EVENT TRIGGER ddlx_watch_drop ON sql_drop EXECUTE PROCEDURE ddlx_watch.log_drop()"
+        };
+
+        try (Statement st = conn.createStatement()) {
+            for (String sql : ddl) {
+                st.execute(sql);
+            }
+        }
+    }
+
+    /* ========================================================================= */
+    /* Цикл наблюдения                                                           */
+    /* ========================================================================= */
+
+    /**
+     * Слушает NOTIFY и обрабатывает очередь, пока не вызван stop().
+     * Сразу после старта обрабатывает то, что накопилось в очереди без наблюдателя.
+     */
+    public void run(Consumer<Delta> sink) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute("LISTEN " + CHANNEL);
+        }
+        PGConnection pg = conn.unwrap(PGConnection.class);
+
+        drain(sink);
+        while (running) {
+            // ждём уведомление не дольше pollIntervalMs, затем всё равно проверяем очередь
+            pg.getNotifications((int) pollIntervalMs);
+            drain(sink);
+        }
+    }
+
+    public void stop() {
+        running = false;
+    }
+
+    /**
+     * Забирает пачку из очереди, схлопывает повторы по таблице, перерисовывает и удаляет
+     * обработанные записи. Возвращает число отправленных событий.
+     */
+    int drain(Consumer<Delta> sink) throws SQLException {
+        String sql =
+            "SELECT q.id, q.relid, q.dropped, q.object_identity, n.nspname, c.relname, c.relkind " +
+            "FROM ddlx_watch.ddl_queue q " +
+            "LEFT JOIN pg_class c ON c.oid = q.relid " +
+            "LEFT JOIN pg_namespace n ON n.oid = c.relnamespace " +
+            "ORDER BY q.id " +
+            "LIMIT 1000";
+
+        // relid -> последняя запись о нём (несколько ALTER подряд дают одно событие)
+        Map<Long, Object[]> latest = new LinkedHashMap<>();
+        List<Long> ids = new ArrayList<>();
+
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(sql)) {
+            while (rs.next()) {
+                long id = rs.getLong("id");
+                long relid = rs.getLong("relid");
+                ids.add(id);
+                if (rs.wasNull()) {
+                    continue; // изменение не относится к таблице (функция, тип и т.п.)
+                }
+                latest.remove(relid); // сохраняем порядок последнего изменения
+                latest.put(relid, new Object[] {
+                    id, rs.getString("nspname"), rs.getString("relname"), rs.getString("relkind"),
+                    rs.getString("object_identity")
+                });
+            }
+        }
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        int sent = 0;
+        for (Object[] row : latest.values()) {
+            long id = (Long) row[0];
+            String schema = (String) row[1];
+            String table = (String) row[2];
+            String relkind = (String) row[3];
+
+            if (table == null) {
+                // таблицы уже нет в pg_class: удалена (сама или в составе DROP SCHEMA)
+                sink.accept(new Delta(id, "DROP", null, (String) row[4], null));
+                sent++;
+            } else if ("r".equals(relkind) || "p".equals(relkind)) {
+                String ddl = PostgresDDLCreator.ddlxCreateTable(conn, schema, table) + "\n"
+                           + PostgresDDLCreator.ddlxCreateConstraints(conn, schema, table);
+                sink.accept(new Delta(id, "UPSERT", schema, table, ddl));
+                sent++;
+            } else if ("v".equals(relkind) || "m".equals(relkind)) {
+                String ddl = PostgresDDLCreator.ddlxCreateView(conn, schema, table);
+                sink.accept(new Delta(id, "UPSERT", schema, table, ddl));
+                sent++;
+            }
+        }
+
+        try (PreparedStatement ps = conn.prepareStatement("DELETE FROM ddlx_watch.ddl_queue WHERE id = ANY (?)")) {
+            ps.setArray(1, conn.createArrayOf("int8", ids.toArray()));
+            ps.executeUpdate();
+        }
+        return sent;
+    }
+
+    /* ========================================================================= */
+    /* Пример использования                                                      */
+    /* ========================================================================= */
+    public static void main(String[] args) throws SQLException {
+        String url      = args.length > 0 ? args[0] : "jdbc:postgresql://localhost:5432/testdb";
+        String user     = args.length > 1 ? args[1] : "postgres";
+        String password = args.length > 2 ? args[2] : "password";
+
+        try (Connection conn = DriverManager.getConnection(url, user, password)) {
+            if (args.length > 3 && "install".equals(args[3])) {
+                install(conn);
+            }
+            new DdlWatcher(conn, 1_000).run(delta -> {
+                System.out.println("-- " + delta.kind + " " +
+                        (delta.schema != null ? delta.schema + "." : "") + delta.table +
+                        " (queue id " + delta.queueId + ")");
+                if (delta.ddl != null) {
+                    System.out.println(delta.ddl);
+                }
+            });
+        }
+    }
+}
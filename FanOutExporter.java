@@ -0,0 +1,257 @@
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Выгрузка DDL сразу из многих баз (сотни баз арендаторов на одном сервере).
+ *
+ * Базы выгружаются параллельно, каждая через одно соединение. Число одновременных
+ * соединений ограничено дважды: общим бюджетом (сколько тянет машина выгрузки)
+ * и бюджетом на сервер (чтобы не выбрать max_connections ни на одном из них).
+ * На каждый сервер запускается не больше perHost рабочих потоков, которые разбирают
+ * очередь его баз; перед каждой базой поток берёт разрешение из общего бюджета.
+ * Так занятый сервер не задерживает остальные, а общий бюджет делится между серверами.
+ *
+ * Цель — JDBC URL конкретной базы либо host:port, тогда выгружаются все базы сервера
+ * (список читается из pg_database через базу postgres).
+ * Результат: <outDir>/<host>_<port>/<database>.sql и один раз на сервер
+ * <outDir>/<host>_<port>/globals.sql (роли, членства, табличные пространства и настройки,
+ * см. PostgresDDLCreator.ddlxExportGlobals) — его восстанавливают раньше баз.
+ *
+ * Запуск: java FanOutExporter <user> <password> <outDir> <global> <perHost> <target> [<target> ...]
+ *         [--include-schema=... ...] [--with-passwords]
+ */
+public class FanOutExporter {
+
+    private final String user;
+    private final String password;
+    private final Semaphore globalBudget;
+    private final int perHostBudget;
+    private final boolean includePasswords;
+
+    public FanOutExporter(String user, String password, int globalBudget, int perHostBudget,
+                          boolean includePasswords) {
+        this.user = user;
+        this.password = password;
+        this.globalBudget = new Semaphore(globalBudget, true);
+        this.perHostBudget = perHostBudget;
+        this.includePasswords = includePasswords;
+    }
+
+    /**
+     * Раскрывает цели в список URL баз: "host:port" -> все базы сервера, URL — как есть.
+     */
+    public List<String> resolveTargets(List<String> targets) throws SQLException, InterruptedException {
+        List<String> urls = new ArrayList<>();
+        for (String target : targets) {
+            if (target.startsWith("jdbc:")) {
+                urls.add(target);
+                continue;
+            }
+            String base = "jdbc:postgresql://" + target + "/";
+            globalBudget.acquire();
+            try (Connection conn = DriverManager.getConnection(base + "postgres", user, password);
+                 Statement st = conn.createStatement();
+                 ResultSet rs = st.executeQuery(
+                     "SELECT datname FROM pg_database " +
+                     "WHERE datallowconn AND NOT datistemplate " +
+                     "ORDER BY datname")) {
+                while (rs.next()) {
+                    urls.add(base + encodeDatabase(rs.getString("datname")));
+                }
+            } finally {
+                globalBudget.release();
+            }
+        }
+        return urls;
+    }
+
+    /**
+     * Выгружает все базы. Возвращает URL -> null при успехе или текст ошибки;
+     * ошибки выгрузки глобальных объектов — под ключом "<host:port> globals".
+     */
+    public Map<String, String> export(List<String> urls, ObjectFilter filter, Path outDir)
+            throws InterruptedException {
+        Map<String, Queue<String>> byHost = new LinkedHashMap<>();
+        for (String url : urls) {
+            byHost.computeIfAbsent(hostOf(url), h -> new ConcurrentLinkedQueue<>()).add(url);
+        }
+        int threads = 0;
+        for (Queue<String> queue : byHost.values()) {
+            threads += Math.min(perHostBudget, queue.size());
+        }
+
+        Map<String, String> errors = new ConcurrentHashMap<>();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(threads, 1));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Map.Entry<String, Queue<String>> host : byHost.entrySet()) {
+                Queue<String> queue = host.getValue();
+                String globalsUrl = queue.peek();
+                int workers = Math.min(perHostBudget, queue.size());
+                for (int k = 0; k < workers; k++) {
+                    boolean globals = k == 0;
+                    futures.add(pool.submit(() -> {
+                        if (globals) {
+                            // глобальные объекты общие для кластера: один проход на сервер
+                            try {
+                                globalBudget.acquire();
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                return;
+                            }
+                            try {
+                                exportGlobals(globalsUrl, outDir);
+                            } catch (SQLException | IOException e) {
+                                errors.put(host.getKey() + " globals", String.valueOf(e));
+                            } finally {
+                                globalBudget.release();
+                            }
+                        }
+                        String url;
+                        while ((url = queue.poll()) != null) {
+                            try {
+                                globalBudget.acquire();
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                return;
+                            }
+                            try {
+                                exportDatabase(url, filter, outDir);
+                            } catch (SQLException | IOException e) {
+                                errors.put(url, String.valueOf(e));
+                            } finally {
+                                globalBudget.release();
+                            }
+                        }
+                    }));
+                }
+            }
+            for (Future<?> f : futures) {
+                try {
+                    f.get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        Map<String, String> result = new LinkedHashMap<>();
+        for (String host : byHost.keySet()) {
+            String key = host + " globals";
+            if (errors.containsKey(key)) {
+                result.put(key, errors.get(key));
+            }
+        }
+        for (String url : urls) {
+            result.put(url, errors.get(url));
+        }
+        return result;
+    }
+
+    private void exportGlobals(String url, Path outDir) throws SQLException, IOException {
+        String ddl;
+        try (Connection conn = DriverManager.getConnection(url, user, password)) {
+            ddl = PostgresDDLCreator.ddlxExportGlobals(conn, includePasswords);
+        }
+
+        Path dir = outDir.resolve(hostOf(url).replace(':', '_'));
+        Files.createDirectories(dir);
+        Files.write(dir.resolve("globals.sql"), ddl.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void exportDatabase(String url, ObjectFilter filter, Path outDir)
+            throws SQLException, IOException {
+        StringBuilder ddl = new StringBuilder();
+        try (Connection conn = DriverManager.getConnection(url, user, password)) {
+            for (String[] t : PostgresDDLCreator.selectTables(conn, filter)) {
+                ddl.append(PostgresDDLCreator.ddlxExportTable(conn, t[0], t[1])).append("\n");
+            }
+        }
+
+        Path dir = outDir.resolve(hostOf(url).replace(':', '_'));
+        Files.createDirectories(dir);
+        // имя базы может содержать что угодно, в том числе разделители пути
+        String fileName = databaseOf(url).replace('/', '_').replace('\\', '_') + ".sql";
+        Files.write(dir.resolve(fileName), ddl.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * host:port из jdbc:postgresql://host:port/db?... (порт по умолчанию 5432).
+     */
+    static String hostOf(String url) {
+        String rest = url.substring(url.indexOf("//") + 2);
+        int slash = rest.indexOf('/');
+        String host = slash < 0 ? rest : rest.substring(0, slash);
+        return host.indexOf(':') < 0 ? host + ":5432" : host;
+    }
+
+    /**
+     * Имя базы из jdbc:postgresql://host:port/db?... (с раскодированными %XX).
+     */
+    static String databaseOf(String url) {
+        String rest = url.substring(url.indexOf("//") + 2);
+        String db = rest.substring(rest.indexOf('/') + 1);
+        int q = db.indexOf('?');
+        db = q < 0 ? db : db.substring(0, q);
+        return URLDecoder.decode(db, StandardCharsets.UTF_8); // так же, как pgjdbc
+    }
+
+    /**
+     * Имя базы для URL: pgjdbc раскодирует %XX, так что пробелы, "/", "?", "&" и
+     * не-ASCII в именах баз из pg_database не ломают разбор URL.
+     */
+    static String encodeDatabase(String name) {
+        return URLEncoder.encode(name, StandardCharsets.UTF_8).replace("+", "%20");
+    }
+
+    /* ========================================================================= */
+    /* Пример использования                                                      */
+    /* ========================================================================= */
+    public static void main(String[] args) throws Exception {
+        FanOutExporter exporter = new FanOutExporter(args[0], args[1],
+                Integer.parseInt(args[3]), Integer.parseInt(args[4]),
+                Arrays.asList(args).contains("--with-passwords"));
+
+        List<String> targets = new ArrayList<>();
+        for (int i = 5; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                targets.add(args[i]);
+            }
+        }
+
+        long start = System.nanoTime();
+        List<String> urls = exporter.resolveTargets(targets);
+        Map<String, String> result = exporter.export(urls, ObjectFilter.fromArgs(args), Paths.get(args[2]));
+
+        int failed = 0;
+        for (Map.Entry<String, String> e : result.entrySet()) {
+            if (e.getValue() != null) {
+                System.out.println("-- FAILED " + e.getKey() + ": " + e.getValue());
+                failed++;
+            }
+        }
+        System.out.println("-- databases: " + urls.size() + ", failed: " + failed
+                + ", " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+}
@@ -0,0 +1,217 @@
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Выгрузка DDL на нагруженном primary без риска повиснуть на чужих блокировках.
+ * DDL каждой таблицы — PostgresDDLCreator.ddlxExportTable; здесь только таймауты и повторы.
+ *
+ * - каждому соединению выставляются statement_timeout и lock_timeout, так что любой
+ *   запрос к каталогу (pg_get_constraintdef, pg_get_indexdef, ...) ограничен по времени;
+ * - таблица, упёршаяся в блокировку или таймаут, откладывается и повторяется
+ *   в следующем проходе с нарастающей паузой, остальные выгружаются без задержки;
+ * - число параллельных запросов подстраивается по задержке (AIMD): если каталог
+ *   начинает отвечать медленнее targetLatencyMs, параллелизм уменьшается вдвое.
+ */
+public class LockSafeExporter {
+
+    /** SQLSTATE lock_not_available (lock_timeout) */
+    private static final String LOCK_NOT_AVAILABLE = "55P03";
+    /** SQLSTATE query_canceled (statement_timeout) */
+    private static final String QUERY_CANCELED = "57014";
+
+    /**
+     * Настройки выгрузки.
+     */
+    public static class Options {
+        public long statementTimeoutMs = 30_000;
+        public long lockTimeoutMs      = 2_000;
+        public int  maxConcurrency     = 4;
+        public long targetLatencyMs    = 200;
+        public int  maxRetries         = 5;
+        public long retryBackoffMs     = 1_000;
+    }
+
+    /**
+     * Результат: DDL по таблицам (в порядке запроса) и таблицы, которые так и не удалось выгрузить
+     * (с ошибкой или "interrupted", если поток прервали до начала выгрузки).
+     */
+    public static class Result {
+        public final Map<String, String> ddl = new LinkedHashMap<>();
+        public final Map<String, String> failed = new LinkedHashMap<>();
+    }
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final Options options;
+
+    public LockSafeExporter(String url, String user, String password, Options options) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.options = options;
+    }
+
+    /**
+     * Выставляет таймауты на уровне сессии: они действуют на каждый последующий запрос к каталогу.
+     */
+    public static void applyCatalogTimeouts(Connection conn, long statementTimeoutMs, long lockTimeoutMs) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute("SET statement_timeout = " + statementTimeoutMs);
+            st.execute("SET lock_timeout = " + lockTimeoutMs);
+        }
+    }
+
+    /**
+     * Выгружает таблицы {schema, table}. Заблокированные откладываются и повторяются
+     * до maxRetries раз; прочие ошибки фиксируются в Result.failed без повтора.
+     */
+    public Result export(List<String[]> tables) throws InterruptedException {
+        Map<String, String> done = new ConcurrentHashMap<>();
+        Map<String, String> errors = new ConcurrentHashMap<>();
+        List<Connection> connections = Collections.synchronizedList(new ArrayList<>());
+        ThreadLocal<Connection> perThread = new ThreadLocal<>();
+        AdaptiveLimiter limiter = new AdaptiveLimiter(options.maxConcurrency, options.targetLatencyMs);
+
+        ExecutorService pool = Executors.newFixedThreadPool(options.maxConcurrency);
+        try {
+            List<String[]> pending = tables;
+            for (int attempt = 0; !pending.isEmpty(); attempt++) {
+                if (attempt > 0) {
+                    // пауза растёт с каждым проходом: 1x, 2x, 4x ...
+                    Thread.sleep(options.retryBackoffMs << Math.min(attempt - 1, 10));
+                }
+                boolean lastAttempt = attempt >= options.maxRetries;
+                List<String[]> locked = Collections.synchronizedList(new ArrayList<>());
+
+                List<Future<?>> futures = new ArrayList<>();
+                for (String[] t : pending) {
+                    futures.add(pool.submit(() -> {
+                        String key = t[0] + "." + t[1];
+                        try {
+                            limiter.acquire();
+                        } catch (InterruptedException e) {
+                            // таблица не выгружена — она должна попасть в Result.failed, а не пропасть
+                            errors.put(key, "interrupted");
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                        long start = System.nanoTime();
+                        try {
+                            Connection conn = perThread.get();
+                            if (conn == null) {
+                                conn = openConnection();
+                                connections.add(conn);
+                                perThread.set(conn);
+                            }
+                            done.put(key, PostgresDDLCreator.ddlxExportTable(conn, t[0], t[1]));
+                            errors.remove(key);
+                        } catch (SQLException e) {
+                            if (isLockOrTimeout(e) && !lastAttempt) {
+                                locked.add(t);
+                            }
+                            errors.put(key, e.getSQLState() + ": " + e.getMessage());
+                        } finally {
+                            limiter.release(System.nanoTime() - start);
+                        }
+                    }));
+                }
+                for (Future<?> f : futures) {
+                    try {
+                        f.get();
+                    } catch (ExecutionException e) {
+                        throw new IllegalStateException(e.getCause());
+                    }
+                }
+                pending = new ArrayList<>(locked);
+            }
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(1, TimeUnit.MINUTES);
+            for (Connection c : connections) {
+                try {
+                    c.close();
+                } catch (SQLException e) {
+                    // соединение уже не нужно
+                }
+            }
+        }
+
+        Result result = new Result();
+        for (String[] t : tables) {
+            String key = t[0] + "." + t[1];
+            if (done.containsKey(key)) {
+                result.ddl.put(key, done.get(key));
+            } else if (errors.containsKey(key)) {
+                result.failed.put(key, errors.get(key));
+            }
+        }
+        return result;
+    }
+
+    private Connection openConnection() throws SQLException {
+        Connection conn = DriverManager.getConnection(url, user, password);
+        applyCatalogTimeouts(conn, options.statementTimeoutMs, options.lockTimeoutMs);
+        return conn;
+    }
+
+    private static boolean isLockOrTimeout(SQLException e) {
+        return LOCK_NOT_AVAILABLE.equals(e.getSQLState()) || QUERY_CANCELED.equals(e.getSQLState());
+    }
+
+    /**
+     * Ограничитель параллелизма AIMD: +1 к лимиту, пока сглаженная задержка ниже цели,
+     * и деление пополам, когда выше (не чаще раза за cooldown, чтобы не схлопнуться до 1
+     * от одной медленной пачки).
+     */
+    static class AdaptiveLimiter {
+        private static final long COOLDOWN_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+        private final int maxLimit;
+        private final long targetNanos;
+        private int limit;
+        private int inFlight;
+        private double ewmaNanos;
+        private long lastChange;
+
+        AdaptiveLimiter(int maxLimit, long targetLatencyMs) {
+            this.maxLimit = maxLimit;
+            this.limit = maxLimit;
+            this.targetNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMs);
+        }
+
+        synchronized void acquire() throws InterruptedException {
+            while (inFlight >= limit) {
+                wait();
+            }
+            inFlight++;
+        }
+
+        synchronized void release(long latencyNanos) {
+            inFlight--;
+            ewmaNanos = ewmaNanos == 0 ? latencyNanos : 0.8 * ewmaNanos + 0.2 * latencyNanos;
+
+            long now = System.nanoTime();
+            if (now - lastChange >= COOLDOWN_NANOS) {
+                if (ewmaNanos > targetNanos && limit > 1) {
+                    limit = Math.max(1, limit / 2);
+                    lastChange = now;
+                } else if (ewmaNanos < targetNanos && limit < maxLimit) {
+                    limit++;
+                    lastChange = now;
+                }
+            }
+            notifyAll();
+        }
+    }
+}
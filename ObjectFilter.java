@@ -0,0 +1,242 @@
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Фильтр выгружаемых объектов: схемы и таблицы по маскам (* и ?) или регулярным выражениям,
+ * relkind и владельцы. Фильтр не применяется в Java, а превращается в условие WHERE
+ * bulk-запросов к каталогу, так что 200 таблиц из каталога в 50k выгружаются так же
+ * быстро, как 200 таблиц из маленького.
+ *
+ * Каждый список передаётся одним параметром-массивом (LIKE ANY / ~ ANY / = ANY),
+ * поэтому текст запроса не зависит от числа масок. Маски и регулярные выражения
+ * включения таблиц — альтернативы (таблица отбирается, если подходит под любую из них),
+ * все остальные условия складываются через AND.
+ */
+public class ObjectFilter {
+
+    private final List<String> includeSchemas = new ArrayList<>();
+    private final List<String> excludeSchemas = new ArrayList<>();
+    private final List<String> includeTables = new ArrayList<>();
+    private final List<String> excludeTables = new ArrayList<>();
+    private final List<String> includeTableRegex = new ArrayList<>();
+    private final List<String> excludeTableRegex = new ArrayList<>();
+    private final List<String> relkinds = new ArrayList<>();
+    private final List<String> owners = new ArrayList<>();
+
+    /**
+     * Пустой фильтр: ничего не добавляет к запросу.
+     */
+    public static ObjectFilter all() {
+        return new ObjectFilter();
+    }
+
+    public ObjectFilter includeSchema(String glob) {
+        includeSchemas.add(globToLike(glob));
+        return this;
+    }
+
+    public ObjectFilter excludeSchema(String glob) {
+        excludeSchemas.add(globToLike(glob));
+        return this;
+    }
+
+    public ObjectFilter includeTable(String glob) {
+        includeTables.add(globToLike(glob));
+        return this;
+    }
+
+    public ObjectFilter excludeTable(String glob) {
+        excludeTables.add(globToLike(glob));
+        return this;
+    }
+
+    public ObjectFilter includeTableRegex(String regex) {
+        includeTableRegex.add(regex);
+        return this;
+    }
+
+    public ObjectFilter excludeTableRegex(String regex) {
+        excludeTableRegex.add(regex);
+        return this;
+    }
+
+    /**
+     * relkind: 'r', 'p', 'f', 'v', 'm', ...
+     */
+    public ObjectFilter relkind(String relkind) {
+        relkinds.add(relkind);
+        return this;
+    }
+
+    public ObjectFilter owner(String role) {
+        owners.add(role);
+        return this;
+    }
+
+    public boolean hasRelkinds() {
+        return !relkinds.isEmpty();
+    }
+
+    /**
+     * Ни одного условия (фильтр пропускает всё).
+     */
+    public boolean isEmpty() {
+        return includeSchemas.isEmpty() && excludeSchemas.isEmpty()
+            && includeTables.isEmpty() && excludeTables.isEmpty()
+            && includeTableRegex.isEmpty() && excludeTableRegex.isEmpty()
+            && relkinds.isEmpty() && owners.isEmpty();
+    }
+
+    /**
+     * Фильтр из аргументов командной строки:
+     * --include-schema=, --exclude-schema=, --include-table=, --exclude-table=,
+     * --include-table-regex=, --exclude-table-regex=, --relkind=, --owner=
+     * (каждый можно повторять). Прочие аргументы игнорируются.
+     */
+    public static ObjectFilter fromArgs(String[] args) {
+        ObjectFilter filter = new ObjectFilter();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                continue;
+            }
+            String value = arg.substring(eq + 1);
+            switch (arg.substring(2, eq)) {
+                case "include-schema":      filter.includeSchema(value); break;
+                case "exclude-schema":      filter.excludeSchema(value); break;
+                case "include-table":       filter.includeTable(value); break;
+                case "exclude-table":       filter.excludeTable(value); break;
+                case "include-table-regex": filter.includeTableRegex(value); break;
+                case "exclude-table-regex": filter.excludeTableRegex(value); break;
+                case "relkind":             filter.relkind(value); break;
+                case "owner":               filter.owner(value); break;
+                default: break;
+            }
+        }
+        return filter;
+    }
+
+    /* ========================================================================= */
+    /* Компиляция в SQL                                                          */
+    /* ========================================================================= */
+
+    /**
+     * Условие вида " AND ..." для pg_class (алиас c) и pg_namespace (алиас n).
+     * Параметры подставляются bind(...) в том же порядке.
+     */
+    public String sql(String c, String n) {
+        return render(c, n, false);
+    }
+
+    /**
+     * То же условие, но со значениями, подставленными литералами ARRAY[...] —
+     * для запросов без параметров (COPY (SELECT ...) TO STDOUT).
+     */
+    public String inlineSql(String c, String n) {
+        return render(c, n, true);
+    }
+
+    private String render(String c, String n, boolean inline) {
+        StringBuilder sql = new StringBuilder();
+        appendCondition(sql, includeSchemas, n + ".nspname LIKE ANY (?)", inline);
+        appendCondition(sql, excludeSchemas, "NOT " + n + ".nspname LIKE ANY (?)", inline);
+        String byMask = condition(includeTables, c + ".relname LIKE ANY (?)", inline);
+        String byRegex = condition(includeTableRegex, c + ".relname ~ ANY (?)", inline);
+        if (byMask != null && byRegex != null) {
+            sql.append(" AND (").append(byMask).append(" OR ").append(byRegex).append(")");
+        } else if (byMask != null || byRegex != null) {
+            sql.append(" AND ").append(byMask != null ? byMask : byRegex);
+        }
+        appendCondition(sql, excludeTables, "NOT " + c + ".relname LIKE ANY (?)", inline);
+        appendCondition(sql, excludeTableRegex, "NOT " + c + ".relname ~ ANY (?)", inline);
+        appendCondition(sql, relkinds, c + ".relkind::text = ANY (?)", inline);
+        appendCondition(sql, owners, "pg_get_userbyid(" + c + ".relowner) = ANY (?)", inline);
+        return sql.toString();
+    }
+
+    /**
+     * Условие " AND ..." для объектов, которые не являются отношениями (функции): из фильтра
+     * берутся только схемы (pg_namespace, алиас n) и владельцы (owner — столбец с OID роли,
+     * например p.proowner); маски таблиц и relkind к таким объектам не относятся.
+     * Параметры подставляются bindSchemaOwner(...).
+     */
+    public String schemaOwnerSql(String n, String owner) {
+        StringBuilder sql = new StringBuilder();
+        appendCondition(sql, includeSchemas, n + ".nspname LIKE ANY (?)", false);
+        appendCondition(sql, excludeSchemas, "NOT " + n + ".nspname LIKE ANY (?)", false);
+        appendCondition(sql, owners, "pg_get_userbyid(" + owner + ") = ANY (?)", false);
+        return sql.toString();
+    }
+
+    /**
+     * Подставляет параметры условия, начиная с index. Возвращает следующий свободный индекс.
+     */
+    public int bind(PreparedStatement ps, int index) throws SQLException {
+        List<List<String>> lists = new ArrayList<>();
+        lists.add(includeSchemas);
+        lists.add(excludeSchemas);
+        lists.add(includeTables);
+        lists.add(includeTableRegex);
+        lists.add(excludeTables);
+        lists.add(excludeTableRegex);
+        lists.add(relkinds);
+        lists.add(owners);
+        return bind(ps, index, lists);
+    }
+
+    /**
+     * Параметры условия schemaOwnerSql, начиная с index. Возвращает следующий свободный индекс.
+     */
+    public int bindSchemaOwner(PreparedStatement ps, int index) throws SQLException {
+        List<List<String>> lists = new ArrayList<>();
+        lists.add(includeSchemas);
+        lists.add(excludeSchemas);
+        lists.add(owners);
+        return bind(ps, index, lists);
+    }
+
+    private static int bind(PreparedStatement ps, int index, List<List<String>> lists) throws SQLException {
+        for (List<String> values : lists) {
+            if (!values.isEmpty()) {
+                ps.setArray(index++, ps.getConnection().createArrayOf("text", values.toArray()));
+            }
+        }
+        return index;
+    }
+
+    private static void appendCondition(StringBuilder sql, List<String> values, String condition, boolean inline) {
+        String rendered = condition(values, condition, inline);
+        if (rendered != null) {
+            sql.append(" AND ").append(rendered);
+        }
+    }
+
+    /**
+     * Условие для непустого списка (с массивом-литералом вместо ? при inline) или null.
+     */
+    private static String condition(List<String> values, String condition, boolean inline) {
+        if (values.isEmpty()) {
+            return null;
+        }
+        if (inline) {
+            StringBuilder array = new StringBuilder("ARRAY[");
+            for (int i = 0; i < values.size(); i++) {
+                array.append(i > 0 ? ", " : "").append(PostgresDDLCreator.quoteLiteral(values.get(i)));
+            }
+            condition = condition.replace("?", array.append("]::text[]").toString());
+        }
+        return condition;
+    }
+
+    /**
+     * Маска с * и ? -> шаблон LIKE (спецсимволы LIKE экранируются).
+     */
+    static String globToLike(String glob) {
+        return glob.replace("\\", "\\\\")
+                   .replace("%", "\\%")
+                   .replace("_", "\\_")
+                   .replace('*', '%')
+                   .replace('?', '_');
+    }
+}
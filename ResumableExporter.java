@@ -0,0 +1,213 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.*;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Многочасовая выгрузка, которую можно прервать и продолжить.
+ *
+ * DDL пишется в файл вывода, а после каждой таблицы в файл контрольных точек дописывается
+ * строка "schema<TAB>table<TAB>offset", где offset — длина файла вывода после этой таблицы.
+ * Каждая строка уходит на диск одной записью с force(), так что файл либо содержит её
+ * целиком, либо не содержит (недописанный хвост без перевода строки при чтении отбрасывается).
+ *
+ * При запуске с существующим файлом контрольных точек вывод обрезается до последнего
+ * зафиксированного offset (DDL таблицы, не успевшей попасть в контрольную точку,
+ * выгружается заново), а уже выгруженные таблицы пропускаются.
+ *
+ * При обрыве соединения (SQLSTATE 08xxx, 57P01–57P03) оно пересоздаётся с нарастающей
+ * паузой, и таблица выгружается снова; после maxAttempts неудач подряд выгрузка
+ * прекращается с ошибкой — следующий запуск продолжит с того же места. Прочие ошибки
+ * прекращают выгрузку сразу.
+ *
+ * Запуск: java ResumableExporter <url> <user> <password> <out.sql> [--include-schema=... ...]
+ *         (контрольные точки — <out.sql>.checkpoint)
+ */
+public class ResumableExporter {
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int maxAttempts;
+    private final long backoffMs;
+    private final long maxBackoffMs;
+
+    private Connection conn;
+
+    public ResumableExporter(String url, String user, String password,
+                             int maxAttempts, long backoffMs, long maxBackoffMs) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxAttempts = maxAttempts;
+        this.backoffMs = backoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+    }
+
+    /**
+     * Выгружает таблицы, прошедшие фильтр, в output, продолжая с контрольной точки.
+     * Возвращает число таблиц, выгруженных в этом запуске.
+     */
+    public int export(ObjectFilter filter, Path output, Path checkpoint)
+            throws SQLException, IOException, InterruptedException {
+        Map<String, Long> done = readCheckpoint(checkpoint);
+        long offset = 0;
+        for (long end : done.values()) {
+            offset = Math.max(offset, end);
+        }
+
+        int exported = 0;
+        try (FileChannel out = FileChannel.open(output,
+                 StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileChannel cp = FileChannel.open(checkpoint,
+                 StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+
+            // всё, что записано после последней контрольной точки, выгрузим заново
+            out.truncate(offset);
+            out.position(offset);
+
+            List<String[]> tables = withRetry(() -> PostgresDDLCreator.selectTables(connection(), filter));
+            for (String[] t : tables) {
+                String key = t[0] + "\t" + t[1];
+                if (done.containsKey(key)) {
+                    continue;
+                }
+
+                String ddl = withRetry(() -> PostgresDDLCreator.ddlxExportTable(connection(), t[0], t[1]));
+                writeFully(out, ddl + "\n");
+                out.force(false);
+
+                offset = out.position();
+                writeFully(cp, key + "\t" + offset + "\n");
+                cp.force(false);
+
+                done.put(key, offset);
+                exported++;
+            }
+        } finally {
+            closeConnection();
+        }
+        return exported;
+    }
+
+    /* ========================================================================= */
+    /* Контрольные точки                                                         */
+    /* ========================================================================= */
+
+    /**
+     * "schema\ttable" -> offset. Строка без завершающего \n (запись прервана) игнорируется.
+     */
+    static Map<String, Long> readCheckpoint(Path checkpoint) throws IOException {
+        Map<String, Long> done = new HashMap<>();
+        if (!Files.exists(checkpoint)) {
+            return done;
+        }
+        String content = new String(Files.readAllBytes(checkpoint), StandardCharsets.UTF_8);
+        int complete = content.lastIndexOf('\n') + 1;
+        for (String line : content.substring(0, complete).split("\n")) {
+            int tab = line.lastIndexOf('\t');
+            if (tab > 0) {
+                done.put(line.substring(0, tab), Long.parseLong(line.substring(tab + 1)));
+            }
+        }
+        if (complete < content.length()) {
+            // отрезаем недописанный хвост, чтобы следующая запись начиналась с новой строки
+            try (FileChannel cp = FileChannel.open(checkpoint, StandardOpenOption.WRITE)) {
+                cp.truncate(content.substring(0, complete).getBytes(StandardCharsets.UTF_8).length);
+            }
+        }
+        return done;
+    }
+
+    private static void writeFully(FileChannel channel, String text) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+    }
+
+    /* ========================================================================= */
+    /* Соединение и повторы                                                      */
+    /* ========================================================================= */
+
+    private interface CatalogCall<T> {
+        T call() throws SQLException;
+    }
+
+    /**
+     * Выполняет вызов; при обрыве соединения (isTransient) закрывает его, ждёт
+     * (1x, 2x, 4x ... backoffMs, не больше maxBackoffMs) и повторяет на новом соединении.
+     * Остальные ошибки (синтаксис, права, нехватка ресурсов и т.п.) повтором не лечатся
+     * и пробрасываются сразу.
+     */
+    private <T> T withRetry(CatalogCall<T> call) throws SQLException, InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return call.call();
+            } catch (SQLException e) {
+                if (!isTransient(e)) {
+                    throw e;
+                }
+                closeConnection();
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+                long pause = Math.min(backoffMs << Math.min(attempt - 1, 20), maxBackoffMs);
+                System.err.println("-- " + e.getSQLState() + ": " + e.getMessage()
+                        + "; reconnecting in " + pause + " ms (attempt " + attempt + ")");
+                Thread.sleep(pause);
+            }
+        }
+    }
+
+    /**
+     * Ошибка, после которой имеет смысл переподключиться: класс 08 (connection exception)
+     * и 57P01–57P03 (admin_shutdown, crash_shutdown, cannot_connect_now).
+     */
+    static boolean isTransient(SQLException e) {
+        String state = e.getSQLState();
+        if (state == null) {
+            return false;
+        }
+        return state.startsWith("08")
+            || "57P01".equals(state) || "57P02".equals(state) || "57P03".equals(state);
+    }
+
+    private Connection connection() throws SQLException {
+        if (conn == null) {
+            conn = DriverManager.getConnection(url, user, password);
+        }
+        return conn;
+    }
+
+    private void closeConnection() {
+        if (conn != null) {
+            try {
+                conn.close();
+            } catch (SQLException e) {
+                // соединение уже разорвано
+            }
+            conn = null;
+        }
+    }
+
+    /* ========================================================================= */
+    /* Пример использования                                                      */
+    /* ========================================================================= */
+    public static void main(String[] args) throws Exception {
+        Path output = Paths.get(args[3]);
+        Path checkpoint = Paths.get(args[3] + ".checkpoint");
+
+        ResumableExporter exporter = new ResumableExporter(args[0], args[1], args[2], 10, 1_000, 60_000);
+        int exported = exporter.export(ObjectFilter.fromArgs(args), output, checkpoint);
+        System.out.println("-- exported " + exported + " tables to " + output);
+    }
+}
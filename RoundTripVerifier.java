@@ -0,0 +1,473 @@
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Проверка "туда и обратно": сгенерированный DDL применяется к scratch-базе на локальном
+ * PostgreSQL, затем каталог восстановленных таблиц сравнивается с исходным.
+ *
+ * Таблицы схемы разбиваются на компоненты связности (FOREIGN KEY, INHERITS, PARTITION OF),
+ * компоненты раскладываются по K scratch-схемам и проверяются параллельно — каждая
+ * в своём соединении. Сравнивается модель TableDefinition по частям (столбцы, ограничения,
+ * DEFAULT, наследование, секционирование), так что в отчёте видно, какая часть разошлась:
+ * неэкранированные идентификаторы, неверно распознанный SERIAL, потерянные границы секций.
+ * Типы проверяемой схемы создаются в каждой scratch-схеме до таблиц; типы других схем
+ * должны уже быть в scratch-базе. Ошибки применения типов и последовательностей
+ * попадают в отчёт отдельной строкой.
+ *
+ * Запуск:
+ *   java RoundTripVerifier jdbc:postgresql://prod/db jdbc:postgresql://localhost/scratch user password public 8 [jdbc]
+ * Последний аргумент "jdbc" проверяет DDLGenerator вместо PostgresDDLCreator.
+ */
+public class RoundTripVerifier {
+
+    /**
+     * Генератор, чей DDL проверяется: скрипт одной таблицы в порядке
+     * CREATE TABLE, DEFAULT, ограничения.
+     */
+    interface TableScript {
+        String createTable(Connection conn, String schema, String table) throws SQLException;
+        String defaults(Connection conn, String schema, String table) throws SQLException;
+        String constraints(Connection conn, String schema, String table) throws SQLException;
+    }
+
+    static final TableScript POSTGRES_DDL_CREATOR = new TableScript() {
+        public String createTable(Connection conn, String schema, String table) throws SQLException {
+            return PostgresDDLCreator.ddlxCreateTable(conn, schema, table);
+        }
+        public String defaults(Connection conn, String schema, String table) throws SQLException {
+            return PostgresDDLCreator.ddlxAlterTableDefaults(conn, schema, table);
+        }
+        public String constraints(Connection conn, String schema, String table) throws SQLException {
+            return PostgresDDLCreator.ddlxCreateConstraints(conn, schema, table);
+        }
+    };
+
+    static final TableScript JDBC_DDL_GENERATOR = new TableScript() {
+        public String createTable(Connection conn, String schema, String table) throws SQLException {
+            return new DDLGenerator(conn).ddlxCreateTable(schema, table);
+        }
+        public String defaults(Connection conn, String schema, String table) throws SQLException {
+            return new DDLGenerator(conn).ddlxAlterTableDefaults(schema, table);
+        }
+        public String constraints(Connection conn, String schema, String table) throws SQLException {
+            return new DDLGenerator(conn).ddlxCreateConstraints(schema, table);
+        }
+    };
+
+    private final String sourceUrl;
+    private final String scratchUrl;
+    private final String user;
+    private final String password;
+    private final TableScript generator;
+
+    public RoundTripVerifier(String sourceUrl, String scratchUrl, String user, String password, TableScript generator) {
+        this.sourceUrl = sourceUrl;
+        this.scratchUrl = scratchUrl;
+        this.user = user;
+        this.password = password;
+        this.generator = generator;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String sourceUrl  = args[0];
+        String scratchUrl = args[1];
+        String user       = args[2];
+        String password   = args[3];
+        String schema     = args.length > 4 ? args[4] : "public";
+        int workers       = args.length > 5 ? Integer.parseInt(args[5]) : 4;
+        TableScript generator = args.length > 6 && "jdbc".equals(args[6]) ? JDBC_DDL_GENERATOR : POSTGRES_DDL_CREATOR;
+
+        long t0 = System.nanoTime();
+        Map<String, List<String>> diffs =
+            new RoundTripVerifier(sourceUrl, scratchUrl, user, password, generator).verify(schema, workers);
+
+        for (Map.Entry<String, List<String>> e : diffs.entrySet()) {
+            for (String d : e.getValue()) {
+                System.out.println(e.getKey() + ": " + d);
+            }
+        }
+        System.out.printf("-- расхождений в таблицах: %d, время %d мс%n",
+                diffs.size(), (System.nanoTime() - t0) / 1_000_000);
+        if (!diffs.isEmpty()) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Проверяет все таблицы схемы. Возвращает таблица -> список расхождений
+     * (в отчёт попадают только таблицы с расхождениями).
+     */
+    public Map<String, List<String>> verify(String schema, int workers) throws SQLException, InterruptedException {
+        List<List<String>> buckets;
+        try (Connection source = open(sourceUrl)) {
+            buckets = distribute(components(source, schema), workers);
+        }
+
+        Map<String, List<String>> diffs = Collections.synchronizedMap(new LinkedHashMap<>());
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int k = 0; k < buckets.size(); k++) {
+                List<String> tables = buckets.get(k);
+                String scratchSchema = "ddlx_verify_" + k;
+                futures.add(pool.submit(() -> {
+                    verifyBucket(schema, scratchSchema, tables, diffs);
+                    return null;
+                }));
+            }
+            for (Future<?> f : futures) {
+                try {
+                    f.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof SQLException) {
+                        throw (SQLException) e.getCause();
+                    }
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return diffs;
+    }
+
+    /* ========================================================================= */
+    /* Проверка одной scratch-схемы                                              */
+    /* ========================================================================= */
+
+    private void verifyBucket(String schema, String scratchSchema, List<String> tables,
+                              Map<String, List<String>> diffs) throws SQLException {
+        try (Connection source = open(sourceUrl);
+             Connection scratch = open(scratchUrl)) {
+
+            // search_path = проверяемая схема: тогда pg_get_constraintdef/pg_get_expr
+            // выводят имена без схемы и скрипт переносится в scratch-схему заменой префикса
+            setSearchPath(source, schema);
+            try (Statement st = scratch.createStatement()) {
+                st.execute("DROP SCHEMA IF EXISTS " + PostgresDDLCreator.quoteIdentifier(scratchSchema) + " CASCADE");
+                st.execute("CREATE SCHEMA " + PostgresDDLCreator.quoteIdentifier(scratchSchema));
+            }
+            setSearchPath(scratch, scratchSchema);
+
+            // 1. Скрипт: типы схемы, все CREATE TABLE (родители раньше наследников),
+            //    затем последовательности, DEFAULT, ограничения и в самом конце FOREIGN KEY
+            List<String> types = statements(rename(
+                    PostgresDDLCreator.ddlxCreateTypes(source, schema), schema, scratchSchema));
+            List<String> create = new ArrayList<>();
+            List<String> defaults = new ArrayList<>();
+            List<String> constraints = new ArrayList<>();
+            List<String> foreignKeys = new ArrayList<>();
+            for (String table : tables) {
+                create.add(rename(generator.createTable(source, schema, table), schema, scratchSchema));
+                defaults.addAll(statements(rename(generator.defaults(source, schema, table), schema, scratchSchema)));
+                for (String c : statements(rename(generator.constraints(source, schema, table), schema, scratchSchema))) {
+                    (c.contains(" FOREIGN KEY ") ? foreignKeys : constraints).add(c);
+                }
+            }
+            // Последовательности таблиц этой корзины: принадлежащие им и самостоятельные,
+            // на которые ссылаются их DEFAULT; последовательности других корзин здесь не создаются.
+            // relkind 'r'/'p' отсекает самостоятельные последовательности, подходящие только
+            // по собственному имени.
+            ObjectFilter bucket = ObjectFilter.all().relkind("r").relkind("p");
+            for (String table : tables) {
+                bucket.includeTable(table);
+            }
+            List<String> sequences = statements(rename(
+                    PostgresDDLCreator.ddlxCreateSequences(source, schema, bucket),
+                    schema, scratchSchema));
+
+            Map<String, List<String>> applyErrors = new HashMap<>();
+            Map<String, List<String>> objectErrors = new HashMap<>();
+            apply(scratch, types, objectErrors);
+            apply(scratch, create, applyErrors);
+            apply(scratch, sequences, objectErrors);
+            apply(scratch, defaults, applyErrors);
+            apply(scratch, constraints, applyErrors);
+            apply(scratch, foreignKeys, applyErrors);
+
+            // ошибки типов и последовательностей не относятся к одной таблице — отдельной строкой отчёта
+            List<String> objectDiffs = new ArrayList<>();
+            for (List<String> errors : objectErrors.values()) {
+                for (String err : errors) {
+                    objectDiffs.add("ошибка применения: " + err);
+                }
+            }
+            if (!objectDiffs.isEmpty()) {
+                diffs.put(schema + " (типы и последовательности, " + scratchSchema + ")", objectDiffs);
+            }
+
+            // 2. Сравниваем модели по частям
+            for (String table : tables) {
+                List<String> tableDiffs = new ArrayList<>();
+                for (String err : applyErrors.getOrDefault(table, Collections.emptyList())) {
+                    tableDiffs.add("ошибка применения: " + err);
+                }
+                compare(new TableDefinition(source, schema, table),
+                        new TableDefinition(scratch, scratchSchema, table),
+                        schema, scratchSchema, tableDiffs);
+                if (!tableDiffs.isEmpty()) {
+                    diffs.put(schema + "." + table, tableDiffs);
+                }
+            }
+        }
+    }
+
+    /**
+     * Построчное сравнение частей TableDefinition; имя scratch-схемы заменяется обратно на исходное.
+     */
+    private static void compare(TableDefinition expected, TableDefinition actual,
+                                String schema, String scratchSchema, List<String> out) throws SQLException {
+        if (actual.info().relkind == null) {
+            out.add("таблица не создана");
+            return;
+        }
+        diff("persistence", expected.persistence(), actual.persistence(), out);
+        diff("partition key", expected.partitionKey(), actual.partitionKey(), out);
+        diff("partition bound", expected.partitionBound(), actual.partitionBound(), out);
+        diff("inherits", expected.inherits(), rename(actual.inherits(), scratchSchema, schema), out);
+        diff("columns", String.join("\n", expected.columns()), String.join("\n", actual.columns()), out);
+        diff("defaults", expected.defaults(), rename(actual.defaults(), scratchSchema, schema), out);
+        diff("constraints", expected.constraints(), rename(actual.constraints(), scratchSchema, schema), out);
+    }
+
+    private static void diff(String part, String expected, String actual, List<String> out) {
+        if (expected == null ? actual == null : expected.equals(actual)) {
+            return;
+        }
+        List<String> e = expected == null ? Collections.emptyList() : Arrays.asList(expected.split("\n"));
+        List<String> a = actual == null ? Collections.emptyList() : Arrays.asList(actual.split("\n"));
+        Set<String> missing = new LinkedHashSet<>(e);
+        missing.removeAll(a);
+        Set<String> extra = new LinkedHashSet<>(a);
+        extra.removeAll(e);
+        for (String line : missing) {
+            out.add(part + ": - " + line.trim());
+        }
+        for (String line : extra) {
+            out.add(part + ": + " + line.trim());
+        }
+        if (missing.isEmpty() && extra.isEmpty()) {
+            out.add(part + ": отличается порядок");
+        }
+    }
+
+    /**
+     * Применяет операторы по одному; ошибка относится к таблице, имя которой
+     * встречается в операторе (для отчёта), и не прерывает проверку остальных.
+     */
+    private static void apply(Connection conn, List<String> stmts, Map<String, List<String>> errors) {
+        for (String sql : stmts) {
+            try (Statement st = conn.createStatement()) {
+                st.execute(sql);
+            } catch (SQLException e) {
+                if (errors != null) {
+                    errors.computeIfAbsent(tableOf(sql), k -> new ArrayList<>())
+                          .add(e.getMessage().split("\n")[0] + " [" + firstLine(sql) + "]");
+                }
+            }
+        }
+    }
+
+    /* ========================================================================= */
+    /* Разбиение на компоненты                                                   */
+    /* ========================================================================= */
+
+    /**
+     * Компоненты связности таблиц схемы по FOREIGN KEY и pg_inherits (одним запросом).
+     * Внутри компоненты родители идут раньше наследников/секций.
+     */
+    static List<List<String>> components(Connection conn, String schema) throws SQLException {
+        String sql =
+            "SELECT c.relname AS table_name, d.kind, r.relname AS related " +
+            "FROM pg_class c " +
+            "JOIN pg_namespace n ON n.oid = c.relnamespace " +
+            "LEFT JOIN LATERAL ( " +
+            "    SELECT 'f' AS kind, co.confrelid AS rel FROM pg_constraint co " +
+            "     WHERE co.conrelid = c.oid AND co.contype = 'f' " +
+            "    UNION " +
+            "    SELECT 'i', i.inhparent FROM pg_inherits i WHERE i.inhrelid = c.oid " +
+            ") d ON true " +
+            "LEFT JOIN pg_class r ON r.oid = d.rel AND r.relnamespace = c.relnamespace " +
+            "WHERE n.nspname = ? AND c.relkind IN ('r','p') AND c.relpersistence <> 't' " +
+            "ORDER BY c.relname";
+
+        Map<String, String> root = new LinkedHashMap<>();
+        Map<String, List<String>> parents = new HashMap<>();
+        List<String[]> edges = new ArrayList<>();
+
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, schema);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String table = rs.getString("table_name");
+                    String related = rs.getString("related");
+                    root.putIfAbsent(table, table);
+                    if (related != null) {
+                        edges.add(new String[] { table, related });
+                        if ("i".equals(rs.getString("kind"))) {
+                            parents.computeIfAbsent(table, k -> new ArrayList<>()).add(related);
+                        }
+                    }
+                }
+            }
+        }
+
+        for (String[] e : edges) {
+            if (root.containsKey(e[1])) {
+                root.put(find(root, e[0]), find(root, e[1]));
+            }
+        }
+
+        Map<String, List<String>> byRoot = new LinkedHashMap<>();
+        Set<String> placed = new LinkedHashSet<>();
+        for (String table : root.keySet()) {
+            List<String> component = byRoot.computeIfAbsent(find(root, table), k -> new ArrayList<>());
+            placeParentsFirst(table, parents, placed, component);
+        }
+        return new ArrayList<>(byRoot.values());
+    }
+
+    private static void placeParentsFirst(String table, Map<String, List<String>> parents,
+                                          Set<String> placed, List<String> component) {
+        if (!placed.add(table)) {
+            return;
+        }
+        for (String parent : parents.getOrDefault(table, Collections.emptyList())) {
+            placeParentsFirst(parent, parents, placed, component);
+        }
+        component.add(table);
+    }
+
+    private static String find(Map<String, String> root, String t) {
+        while (!root.get(t).equals(t)) {
+            root.put(t, root.get(root.get(t)));
+            t = root.get(t);
+        }
+        return t;
+    }
+
+    /**
+     * Раскладывает компоненты по K корзинам: крупные — первыми, каждую в наименее загруженную.
+     */
+    static List<List<String>> distribute(List<List<String>> components, int k) {
+        List<List<String>> buckets = new ArrayList<>();
+        for (int i = 0; i < Math.min(k, components.size()); i++) {
+            buckets.add(new ArrayList<>());
+        }
+        List<List<String>> sorted = new ArrayList<>(components);
+        sorted.sort((a, b) -> b.size() - a.size());
+        for (List<String> component : sorted) {
+            List<String> smallest = buckets.get(0);
+            for (List<String> b : buckets) {
+                if (b.size() < smallest.size()) {
+                    smallest = b;
+                }
+            }
+            smallest.addAll(component);
+        }
+        return buckets;
+    }
+
+    /* ========================================================================= */
+    /* Вспомогательные методы                                                    */
+    /* ========================================================================= */
+
+    private Connection open(String url) throws SQLException {
+        return DriverManager.getConnection(url, user, password);
+    }
+
+    private static void setSearchPath(Connection conn, String schema) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute("SET search_path = " + PostgresDDLCreator.quoteIdentifier(schema) + ", pg_catalog");
+        }
+    }
+
+    /**
+     * Переносит скрипт из схемы from в схему to: и "from". (PostgresDDLCreator), и from. (DDLGenerator,
+     * format('%I.%I')). Строковые литералы ('...', E'...') не трогаются: метки enum, DEFAULT
+     * и CHECK со строкой "from." должны остаться как есть.
+     */
+    static String rename(String sql, String from, String to) {
+        if (sql == null) {
+            return null;
+        }
+        StringBuilder out = new StringBuilder(sql.length());
+        int start = 0;
+        int i = 0;
+        while (i < sql.length()) {
+            if (sql.charAt(i) != '\'') {
+                i++;
+                continue;
+            }
+            // E'...' — только если E не конец идентификатора (date'...' — обычный литерал)
+            boolean escapes = i > 0 && (sql.charAt(i - 1) == 'E' || sql.charAt(i - 1) == 'e')
+                    && (i == 1 || !Character.isLetterOrDigit(sql.charAt(i - 2)) && sql.charAt(i - 2) != '_');
+            out.append(renameOutsideLiterals(sql.substring(start, i), from, to));
+            int end = i + 1;
+            while (end < sql.length()) {
+                char ch = sql.charAt(end);
+                if (escapes && ch == '\\') {
+                    end += 2;
+                } else if (ch == '\'' && end + 1 < sql.length() && sql.charAt(end + 1) == '\'') {
+                    end += 2;
+                } else if (ch == '\'') {
+                    break;
+                } else {
+                    end++;
+                }
+            }
+            end = Math.min(end + 1, sql.length());
+            out.append(sql, i, end);
+            start = i = end;
+        }
+        return out.append(renameOutsideLiterals(sql.substring(start), from, to)).toString();
+    }
+
+    private static String renameOutsideLiterals(String sql, String from, String to) {
+        String quoted = sql.replace(PostgresDDLCreator.quoteIdentifier(from) + ".",
+                                    PostgresDDLCreator.quoteIdentifier(to) + ".");
+        return quoted.replaceAll("(?<![\\w\".])" + Pattern.quote(from) + "\\.", Matcher.quoteReplacement(to) + ".");
+    }
+
+    /**
+     * Разбивает скрипт на операторы (генераторы выводят по оператору на строку, ";" в конце).
+     * CREATE TABLE многострочный и передаётся целиком, поэтому здесь только ALTER/CREATE SEQUENCE/SELECT.
+     */
+    private static List<String> statements(String script) {
+        List<String> result = new ArrayList<>();
+        for (String line : script.split("\n")) {
+            String s = line.trim();
+            if (!s.isEmpty() && !s.startsWith("--")) {
+                result.add(s);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Имя таблицы в операторе: CREATE TABLE "s"."t" / ALTER TABLE s.t ...
+     */
+    private static String tableOf(String sql) {
+        Matcher m = Pattern.compile("(?i)TABLE\\s+(?:\"?[^\\s\".]+\"?\\.)?\"?([^\\s\"(]+)\"?").matcher(sql);
+        return m.find() ? m.group(1) : "?";
+    }
+
+    private static String firstLine(String sql) {
+        int nl = sql.indexOf('\n');
+        return nl < 0 ? sql : sql.substring(0, nl);
+    }
+}
@@ -0,0 +1,255 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.*;
+
+/**
+ * Эталонные (golden) тесты стратегий каталога PostgresDDLCreator.
+ *
+ * Создаёт в PostgreSQL схему-фикстуру из групп объектов, каждая со своей минимальной
+ * версией и своим эталоном golden/<группа>.sql:
+ * - base — то, что есть во всех версиях: SERIAL, DEFAULT, CHECK, UNIQUE, внешний ключ,
+ *   bpchar и char(1), UNLOGGED, fillfactor и наследник (INHERITS) с унаследованными CHECK и DEFAULT;
+ * - pg10 — IDENTITY с нестандартными параметрами и секционированная таблица с CHECK и секцией;
+ * - pg12 — вычисляемый столбец и секционированная таблица с PK и внешним ключом,
+ *   которые клонируются на секцию;
+ * - pg16 — членство в роли с флагами ADMIN / INHERIT / SET (строки ddlxExportGlobals
+ *   о ролях фикстуры).
+ * Группа рисуется (PostgresDDLCreator.ddlxExportTable, для групп PG 10+ ещё ddlxCreateSequences) каждой стратегией
+ * не старше сервера и не младше самой группы, закреплённой на одном и том же соединении
+ * (PostgresDDLCreator.useStrategy); все они обязаны совпасть с эталоном. Группы новее сервера
+ * пропускаются, так что на 9.6 проверяется только base, а на свежем сервере — всё.
+ *
+ * Владелец таблиц в эталоне заменён на <owner>. С ключом --update эталон группы
+ * перезаписывается выводом первой подходящей стратегии, остальные сравниваются с ним.
+ * Завершается с кодом 1 при любом расхождении.
+ *
+ * Запуск: java StrategyGoldenTest jdbc:postgresql://localhost:5432/testdb postgres password [--update]
+ */
+public class StrategyGoldenTest {
+
+    private static final String SCHEMA = "ddlx_golden";
+
+    /** Префикс ролей фикстуры (роли общие на кластер, схема их не удаляет). */
+    private static final String ROLE = "ddlx_golden_";
+
+    /**
+     * Группа фикстуры: эталон, минимальная версия сервера и стратегии, DDL и таблицы
+     * в порядке вывода; roles — вместо таблиц рисуются глобальные объекты ролей фикстуры.
+     */
+    private static final class Fixture {
+        final String golden;
+        final int minVersion;
+        final String[] ddl;
+        final String[] tables;
+        final boolean roles;
+
+        Fixture(String golden, int minVersion, String[] ddl, String[] tables) {
+            this(golden, minVersion, ddl, tables, false);
+        }
+
+        Fixture(String golden, int minVersion, String[] ddl, String[] tables, boolean roles) {
+            this.golden = golden;
+            this.minVersion = minVersion;
+            this.ddl = ddl;
+            this.tables = tables;
+            this.roles = roles;
+        }
+    }
+
+    private static final Fixture[] FIXTURES = {
+        new Fixture("base", 90600, new String[] {
+            "CREATE TABLE " + SCHEMA + ".parent ("
+                + "id serial PRIMARY KEY, "
+                + "code varchar(32) NOT NULL, "
+                + "qty integer NOT NULL DEFAULT 0, "
+                + "price numeric(12,2), "
+                + "note text DEFAULT 'new', "
+                + "CONSTRAINT parent_code_key UNIQUE (code), "
+                + "CONSTRAINT parent_qty_check CHECK (qty >= 0)"
+                + ") WITH (fillfactor = 70)",
+            "CREATE UNLOGGED TABLE " + SCHEMA + ".child ("
+                + "id bigserial PRIMARY KEY, "
+                + "parent_id integer REFERENCES " + SCHEMA + ".parent (id), "
+                + "created timestamptz NOT NULL DEFAULT now(), "
+                // bpchar без typmod и character(1) рисуются по-разному
+                + "kind bpchar, "
+                + "grade char(1)"
+                + ")",
+            // наследует CHECK и DEFAULT (в том числе nextval чужой последовательности)
+            "CREATE TABLE " + SCHEMA + ".parent_archive ("
+                + "archived_by text NOT NULL, "
+                + "CONSTRAINT parent_archive_by_check CHECK (archived_by <> '')"
+                + ") INHERITS (" + SCHEMA + ".parent)"
+        }, new String[] { "parent", "child", "parent_archive" }),
+
+        new Fixture("pg10", 100000, new String[] {
+            "CREATE TABLE " + SCHEMA + ".ticket ("
+                + "id bigint GENERATED ALWAYS AS IDENTITY (START WITH 1000 INCREMENT BY 10 CACHE 5), "
+                + "title text NOT NULL"
+                + ")",
+            "CREATE TABLE " + SCHEMA + ".measure ("
+                + "logdate date NOT NULL, "
+                + "peak integer, "
+                + "CONSTRAINT measure_peak_check CHECK (peak >= 0)"
+                + ") PARTITION BY RANGE (logdate)",
+            "CREATE TABLE " + SCHEMA + ".measure_2020 PARTITION OF " + SCHEMA + ".measure "
+                + "FOR VALUES FROM ('2020-01-01') TO ('2021-01-01')"
+        }, new String[] { "ticket", "measure", "measure_2020" }),
+
+        new Fixture("pg12", 120000, new String[] {
+            "CREATE TABLE " + SCHEMA + ".box ("
+                + "w numeric NOT NULL, "
+                + "h numeric NOT NULL, "
+                + "area numeric GENERATED ALWAYS AS (w * h) STORED"
+                + ")",
+            "CREATE TABLE " + SCHEMA + ".event ("
+                + "id bigint NOT NULL, "
+                + "happened date NOT NULL, "
+                + "parent_id integer REFERENCES " + SCHEMA + ".parent (id), "
+                + "CONSTRAINT event_pkey PRIMARY KEY (id, happened)"
+                + ") PARTITION BY RANGE (happened)",
+            "CREATE TABLE " + SCHEMA + ".event_2020 PARTITION OF " + SCHEMA + ".event "
+                + "FOR VALUES FROM ('2020-01-01') TO ('2021-01-01')"
+        }, new String[] { "box", "event", "event_2020" }),
+
+        new Fixture("pg16", 160000, new String[] {
+            "DROP ROLE IF EXISTS " + ROLE + "alice",
+            "DROP ROLE IF EXISTS " + ROLE + "staff",
+            "CREATE ROLE " + ROLE + "staff",
+            "CREATE ROLE " + ROLE + "alice LOGIN",
+            "GRANT " + ROLE + "staff TO " + ROLE + "alice WITH ADMIN TRUE, INHERIT FALSE, SET TRUE"
+        }, new String[0], true)
+    };
+
+    /** Имя стратегии и версия, под которую она закрепляется. */
+    private static final String[][] STRATEGIES = {
+        { "pg96", "90600" },
+        { "pg10", "100000" },
+        { "pg12", "120000" },
+        { "pg16", "160000" }
+    };
+
+    public static void main(String[] args) throws SQLException, IOException {
+        String url      = args.length > 0 ? args[0] : "jdbc:postgresql://localhost:5432/testdb";
+        String user     = args.length > 1 ? args[1] : "postgres";
+        String password = args.length > 2 ? args[2] : "password";
+        boolean update  = args.length > 3 && "--update".equals(args[3]);
+
+        Path goldenDir = Paths.get("golden");
+        int failures = 0;
+
+        try (Connection conn = DriverManager.getConnection(url, user, password)) {
+            int serverVersion = PostgresDDLCreator.getServerVersionNum(conn);
+            createFixture(conn, serverVersion);
+            String owner = currentUser(conn);
+
+            for (Fixture fixture : FIXTURES) {
+                Path golden = goldenDir.resolve(fixture.golden + ".sql");
+                if (fixture.minVersion > serverVersion) {
+                    System.out.println("-- " + golden + ": пропущен (сервер " + serverVersion + ")");
+                    continue;
+                }
+
+                String expected = null;
+                if (!update) {
+                    expected = new String(Files.readAllBytes(golden), StandardCharsets.UTF_8);
+                }
+                for (String[] s : STRATEGIES) {
+                    int version = Integer.parseInt(s[1]);
+                    if (version < fixture.minVersion || version > serverVersion) {
+                        continue;
+                    }
+                    PostgresDDLCreator.useStrategy(conn, version);
+                    String actual = renderFixture(conn, fixture, owner);
+
+                    if (expected == null) {
+                        Files.createDirectories(goldenDir);
+                        Files.write(golden, actual.getBytes(StandardCharsets.UTF_8));
+                        System.out.println("-- обновлён " + golden + " (" + s[0] + ")");
+                        expected = actual;
+                    } else {
+                        failures += compare(s[0] + " vs " + golden, expected, actual);
+                    }
+                }
+            }
+        }
+
+        if (failures > 0) {
+            System.out.println("-- расхождений: " + failures);
+            System.exit(1);
+        }
+        System.out.println("-- OK");
+    }
+
+    /** Пересоздаёт схему фикстуры с группами, которые поддерживает сервер. */
+    private static void createFixture(Connection conn, int serverVersion) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+            st.execute("CREATE SCHEMA " + SCHEMA);
+            for (Fixture fixture : FIXTURES) {
+                if (fixture.minVersion <= serverVersion) {
+                    for (String sql : fixture.ddl) {
+                        st.execute(sql);
+                    }
+                }
+            }
+        }
+    }
+
+    private static String currentUser(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT current_user")) {
+            rs.next();
+            return rs.getString(1);
+        }
+    }
+
+    /**
+     * DDL таблиц группы подряд и их последовательности; владелец заменён на <owner>,
+     * чтобы эталон не зависел от того, под какой ролью запущен тест. Последовательности
+     * выгружаются только для групп PG 10+: путь 9.x читает параметры из самой
+     * последовательности, а на сервере 10+ у неё таких столбцов уже нет.
+     */
+    private static String renderFixture(Connection conn, Fixture fixture, String owner) throws SQLException {
+        StringBuilder out = new StringBuilder();
+        if (fixture.roles) {
+            for (String line : PostgresDDLCreator.ddlxExportGlobals(conn, false).split("\n")) {
+                if (line.contains(ROLE)) {
+                    out.append(line).append("\n");
+                }
+            }
+        }
+        ObjectFilter tables = ObjectFilter.all();
+        for (String table : fixture.tables) {
+            out.append(PostgresDDLCreator.ddlxExportTable(conn, SCHEMA, table)).append("\n");
+            tables.includeTable(table);
+        }
+        if (!fixture.roles && fixture.minVersion >= 100000) {
+            out.append(PostgresDDLCreator.ddlxCreateSequences(conn, SCHEMA, tables));
+        }
+        return out.toString().replace(
+                " OWNER TO " + PostgresDDLCreator.quoteIdentifier(owner) + ";",
+                " OWNER TO \"<owner>\";");
+    }
+
+    /** Печатает первую отличающуюся строку; возвращает 1 при расхождении. */
+    private static int compare(String what, String expected, String actual) {
+        if (expected.equals(actual)) {
+            System.out.println("-- " + what + ": совпадает");
+            return 0;
+        }
+        String[] e = expected.split("\n", -1);
+        String[] a = actual.split("\n", -1);
+        int line = 0;
+        while (line < e.length && line < a.length && e[line].equals(a[line])) {
+            line++;
+        }
+        System.out.println("-- " + what + ": расхождение в строке " + (line + 1));
+        System.out.println("   ожидалось: " + (line < e.length ? e[line] : "<конец>"));
+        System.out.println("   получено:  " + (line < a.length ? a[line] : "<конец>"));
+        return 1;
+    }
+}
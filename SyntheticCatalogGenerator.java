@@ -0,0 +1,269 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Генератор синтетического каталога для нагрузочной проверки PostgresDDLCreator.
+ *
+ * Создаёт в локальном PostgreSQL схему из N таблиц по M столбцов, покрывающую все ветки
+ * генератора: обычные, UNLOGGED и TEMPORARY таблицы, partitioned (relkind = 'p'),
+ * INHERITS, IDENTITY и SERIAL столбцы, внешние ключи. Затем выгружает DDL всей схемы
+ * и печатает время, число обращений к серверу и пиковый объём heap.
+ *
+ * Запуск: java SyntheticCatalogGenerator jdbc:postgresql://localhost:5432/testdb postgres password 1000 20
+ */
+public class SyntheticCatalogGenerator {
+
+    private static final String SCHEMA = "ddlx_load";
+
+    /**
+     * Таблиц на транзакцию: каждая CREATE TABLE держит блокировки до конца транзакции
+     * (таблица, TOAST, индексы, последовательности), и каталог на 20000 таблиц одной
+     * транзакцией не помещается в max_locks_per_transaction ("out of shared memory").
+     */
+    private static final int TABLES_PER_COMMIT = 200;
+
+    public static void main(String[] args) throws SQLException {
+        String url      = args.length > 0 ? args[0] : "jdbc:postgresql://localhost:5432/testdb";
+        String user     = args.length > 1 ? args[1] : "postgres";
+        String password = args.length > 2 ? args[2] : "password";
+        int tables      = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+        int columns     = args.length > 4 ? Integer.parseInt(args[4]) : 20;
+
+        try (Connection conn = DriverManager.getConnection(url, user, password)) {
+            long t0 = System.nanoTime();
+            List<String[]> created = createSchema(conn, tables, columns);
+            System.out.printf("-- создано таблиц: %d за %d мс%n",
+                    created.size(), (System.nanoTime() - t0) / 1_000_000);
+
+            exportAndReport(conn, created);
+        }
+    }
+
+    /* ========================================================================= */
+    /* Создание схемы                                                            */
+    /* ========================================================================= */
+
+    /**
+     * Создаёт схему SCHEMA заново и возвращает список пар {schema, table} для выгрузки.
+     * Форма таблицы выбирается по номеру i, так что каждая ветка встречается равномерно.
+     * Фиксируется каждые TABLES_PER_COMMIT таблиц; при ошибке откатывается только
+     * текущая пачка (следующий запуск всё равно пересоздаёт схему).
+     */
+    private static List<String[]> createSchema(Connection conn, int tables, int columns) throws SQLException {
+        List<String[]> created = new ArrayList<>();
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+
+        try (Statement st = conn.createStatement()) {
+            st.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+            st.execute("CREATE SCHEMA " + SCHEMA);
+
+            String tempSchema = null;
+
+            for (int i = 0; i < tables; i++) {
+                String name = "t" + i;
+                String qualified = SCHEMA + "." + name;
+
+                switch (i % 7) {
+                    case 0: // обычная таблица с IDENTITY
+                        st.execute("CREATE TABLE " + qualified + " ("
+                                + "id bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY"
+                                + columnList(columns) + ")");
+                        break;
+                    case 1: // SERIAL + внешний ключ на предыдущую таблицу (IDENTITY)
+                        st.execute("CREATE TABLE " + qualified + " ("
+                                + "id serial PRIMARY KEY, "
+                                + "parent_id bigint REFERENCES " + SCHEMA + ".t" + (i - 1) + "(id)"
+                                + columnList(columns) + ")");
+                        break;
+                    case 2: // UNLOGGED
+                        st.execute("CREATE UNLOGGED TABLE " + qualified + " ("
+                                + "id bigserial PRIMARY KEY" + columnList(columns) + ")");
+                        break;
+                    case 3: // partitioned (relkind = 'p') и две секции
+                        st.execute("CREATE TABLE " + qualified + " ("
+                                + "id bigint NOT NULL, created date NOT NULL" + columnList(columns) + ") "
+                                + "PARTITION BY RANGE (created)");
+                        st.execute("CREATE TABLE " + qualified + "_2023 PARTITION OF " + qualified
+                                + " FOR VALUES FROM ('2023-01-01') TO ('2024-01-01')");
+                        st.execute("CREATE TABLE " + qualified + "_2024 PARTITION OF " + qualified
+                                + " FOR VALUES FROM ('2024-01-01') TO ('2025-01-01')");
+                        // родитель (PARTITION BY) выгружается раньше своих секций
+                        created.add(new String[] { SCHEMA, name });
+                        created.add(new String[] { SCHEMA, name + "_2023" });
+                        created.add(new String[] { SCHEMA, name + "_2024" });
+                        commitEvery(conn, i);
+                        continue;
+                    case 4: // INHERITS от обычной таблицы той же семёрки
+                        st.execute("CREATE TABLE " + qualified + " ("
+                                + "extra text) INHERITS (" + SCHEMA + ".t" + (i - 4) + ")");
+                        break;
+                    case 5: // IDENTITY ALWAYS + CHECK + UNIQUE
+                        st.execute("CREATE TABLE " + qualified + " ("
+                                + "id int GENERATED ALWAYS AS IDENTITY, "
+                                + "code varchar(32) UNIQUE, "
+                                + "amount numeric(12,2) CHECK (amount >= 0)"
+                                + columnList(columns) + ")");
+                        break;
+                    default: // TEMPORARY (relpersistence = 't') живёт в pg_temp_N этой сессии
+                        st.execute("CREATE TEMPORARY TABLE " + name + " ("
+                                + "id serial" + columnList(columns) + ")");
+                        if (tempSchema == null) {
+                            tempSchema = tempSchemaName(conn);
+                        }
+                        created.add(new String[] { tempSchema, name });
+                        commitEvery(conn, i);
+                        continue;
+                }
+                created.add(new String[] { SCHEMA, name });
+                commitEvery(conn, i);
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+
+        return created;
+    }
+
+    private static void commitEvery(Connection conn, int i) throws SQLException {
+        if ((i + 1) % TABLES_PER_COMMIT == 0) {
+            conn.commit();
+        }
+    }
+
+    /**
+     * Список M дополнительных столбцов разных типов (с ведущей запятой).
+     */
+    private static String columnList(int columns) {
+        String[] types = { "text", "varchar(64)", "integer", "numeric(10,2)", "timestamp", "boolean", "bigint" };
+        StringBuilder sb = new StringBuilder();
+        for (int c = 0; c < columns; c++) {
+            sb.append(", c").append(c).append(" ").append(types[c % types.length]);
+            if (c % 5 == 0) {
+                sb.append(" NOT NULL DEFAULT ").append(defaultFor(types[c % types.length]));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String defaultFor(String type) {
+        if (type.startsWith("text") || type.startsWith("varchar")) {
+            return "''";
+        } else if (type.equals("timestamp")) {
+            return "now()";
+        } else if (type.equals("boolean")) {
+            return "false";
+        }
+        return "0";
+    }
+
+    private static String tempSchemaName(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT nspname FROM pg_namespace WHERE oid = pg_my_temp_schema()")) {
+            return rs.next() ? rs.getString(1) : "pg_temp";
+        }
+    }
+
+    /* ========================================================================= */
+    /* Выгрузка и отчёт                                                          */
+    /* ========================================================================= */
+
+    /**
+     * Выгружает DDL всех созданных таблиц через PostgresDDLCreator и печатает
+     * время, число обращений к серверу (execute*) и пиковый heap.
+     */
+    private static void exportAndReport(Connection conn, List<String[]> tables) throws SQLException {
+        AtomicLong roundTrips = new AtomicLong();
+        Connection counted = countingConnection(conn, roundTrips);
+
+        resetPeakUsage();
+        long bytes = 0;
+        long t0 = System.nanoTime();
+
+        for (String[] t : tables) {
+            bytes += PostgresDDLCreator.ddlxCreateTable(counted, t[0], t[1]).length();
+            bytes += PostgresDDLCreator.ddlxCreateConstraints(counted, t[0], t[1]).length();
+            bytes += PostgresDDLCreator.ddlxAlterTableDefaults(counted, t[0], t[1]).length();
+            bytes += PostgresDDLCreator.ddlxAlterOwner(counted, t[0], t[1]).length();
+        }
+        bytes += PostgresDDLCreator.ddlxCreateSequences(counted, SCHEMA).length();
+
+        long wallMs = (System.nanoTime() - t0) / 1_000_000;
+
+        System.out.println("-- ОТЧЁТ --");
+        System.out.printf("таблиц:             %d%n", tables.size());
+        System.out.printf("время, мс:          %d%n", wallMs);
+        System.out.printf("обращений к серверу: %d (%.1f на таблицу)%n",
+                roundTrips.get(), (double) roundTrips.get() / Math.max(1, tables.size()));
+        System.out.printf("символов DDL:       %d%n", bytes);
+        System.out.printf("пиковый heap, МБ:   %d%n", peakHeapUsage() / (1024 * 1024));
+    }
+
+    /**
+     * Оборачивает Connection так, чтобы каждый execute* у выданных Statement/PreparedStatement
+     * увеличивал счётчик — это и есть число обращений к серверу.
+     */
+    private static Connection countingConnection(Connection conn, AtomicLong counter) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            Object result = invoke(conn, method, args);
+            if (result instanceof Statement) {
+                return countingStatement((Statement) result, counter);
+            }
+            return result;
+        };
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(), new Class<?>[] { Connection.class }, handler);
+    }
+
+    private static Statement countingStatement(Statement st, AtomicLong counter) {
+        Class<?> iface = st instanceof CallableStatement ? CallableStatement.class
+                       : st instanceof PreparedStatement ? PreparedStatement.class
+                       : Statement.class;
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (method.getName().startsWith("execute")) {
+                counter.incrementAndGet();
+            }
+            return invoke(st, method, args);
+        };
+        return (Statement) Proxy.newProxyInstance(
+                iface.getClassLoader(), new Class<?>[] { iface }, handler);
+    }
+
+    private static Object invoke(Object target, java.lang.reflect.Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void resetPeakUsage() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long peakHeapUsage() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+}
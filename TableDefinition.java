@@ -0,0 +1,318 @@
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * Структурированное описание таблицы с ленивой загрузкой частей.
+ *
+ * Каждая часть (столбцы, ограничения, DEFAULT, владелец, секционирование, хранение)
+ * читается из каталога при первом обращении и запоминается. Инструментам, которым нужен,
+ * например, только список столбцов, не приходится платить за весь CREATE TABLE.
+ * prefetch(...) позволяет заранее загрузить заданные части (например, до передачи
+ * объекта в другой поток, пока соединение ещё свободно).
+ *
+ * CREATE TABLE — createTable(); PostgresDDLCreator.ddlxCreateTable строится на нём же.
+ * Все разделы таблицы одним пакетом запросов — render(). Объект — снимок каталога
+ * на момент загрузки: он живёт, пока его держит вызывающий, и нигде не кэшируется.
+ */
+public class TableDefinition {
+
+    /**
+     * Части определения, которые можно загрузить заранее.
+     */
+    public enum Part {
+        /** relkind, relpersistence, владелец, секционирование — один запрос */
+        HEADER,
+        COLUMNS,
+        CONSTRAINTS,
+        DEFAULTS,
+        INHERITS,
+        STORAGE
+    }
+
+    /** Части, из которых собирается CREATE TABLE. */
+    static final EnumSet<Part> CREATE_TABLE_PARTS =
+        EnumSet.of(Part.HEADER, Part.COLUMNS, Part.INHERITS, Part.STORAGE);
+
+    private final Connection conn;
+    private final String schema;
+    private final String table;
+
+    private PostgresDDLCreator.TableInfo info;
+    private List<String> columns;
+    private String constraints;   // без внешних ключей
+    private String foreignKeys;
+    private String defaults;
+    private String inherits;
+    private PostgresDDLCreator.TableStorage storage;
+
+    public TableDefinition(Connection conn, String schema, String table) {
+        this.conn = conn;
+        this.schema = schema;
+        this.table = table;
+    }
+
+    /**
+     * Загружает указанные части сразу. Запросы всех ещё не загруженных частей уходят
+     * на сервер одним пакетом (pgjdbc отправляет несколько операторов одного
+     * PreparedStatement с одним Sync), так что это один сетевой круг вместо одного на часть.
+     */
+    public TableDefinition prefetch(EnumSet<Part> parts) throws SQLException {
+        EnumSet<Part> pending = EnumSet.noneOf(Part.class);
+        for (Part part : parts) {
+            if (!isLoaded(part)) {
+                pending.add(part);
+            }
+        }
+        // столбцы секции не нужны, но узнать, секция ли это, можно только из заголовка
+        if (pending.contains(Part.COLUMNS) && info == null) {
+            pending.add(Part.HEADER);
+        }
+
+        if (!pending.isEmpty()) {
+            fetchBatch(pending);
+        }
+        return this;
+    }
+
+    private boolean isLoaded(Part part) {
+        switch (part) {
+            case HEADER:      return info != null;
+            case COLUMNS:     return columns != null;
+            case CONSTRAINTS: return constraints != null;
+            case DEFAULTS:    return defaults != null;
+            case INHERITS:    return inherits != null;
+            case STORAGE:     return storage != null;
+            default:          return false;
+        }
+    }
+
+    /**
+     * Один пакет запросов: у каждого параметры (schema, table), результаты читаются
+     * по порядку частей (EnumSet перебирается в порядке объявления).
+     */
+    private void fetchBatch(EnumSet<Part> parts) throws SQLException {
+        int version = PostgresDDLCreator.getServerVersionNum(conn);
+
+        StringBuilder sql = new StringBuilder();
+        for (Part part : parts) {
+            if (sql.length() > 0) {
+                sql.append(";\n");
+            }
+            sql.append(sqlFor(part));
+        }
+
+        try (PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+            int p = 1;
+            for (int i = 0; i < parts.size(); i++) {
+                ps.setString(p++, schema);
+                ps.setString(p++, table);
+            }
+
+            boolean isResultSet = ps.execute();
+            for (Part part : parts) {
+                while (!isResultSet) {
+                    if (ps.getUpdateCount() == -1) {
+                        throw new SQLException("batch returned fewer results than expected for " + part);
+                    }
+                    isResultSet = ps.getMoreResults();
+                }
+                try (ResultSet rs = ps.getResultSet()) {
+                    switch (part) {
+                        case HEADER:
+                            info = PostgresDDLCreator.readTableInfo(rs);
+                            break;
+                        case COLUMNS:
+                            columns = PostgresDDLCreator.readColumnDefinitions(rs, version);
+                            break;
+                        case CONSTRAINTS:
+                            String[] split = PostgresDDLCreator.renderConstraintsSplit(rs, schema, table, version);
+                            constraints = split[0];
+                            foreignKeys = split[1];
+                            break;
+                        case DEFAULTS:
+                            defaults = PostgresDDLCreator.renderDefaults(rs, schema, table);
+                            break;
+                        case INHERITS:
+                            inherits = PostgresDDLCreator.readInheritsClause(rs);
+                            break;
+                        case STORAGE:
+                            storage = PostgresDDLCreator.readTableStorage(rs);
+                            break;
+                        default:
+                            break;
+                    }
+                }
+                isResultSet = ps.getMoreResults();
+            }
+        }
+
+        if (columns != null && info.relispartition) {
+            columns = new ArrayList<>();
+        }
+    }
+
+    private String sqlFor(Part part) throws SQLException {
+        switch (part) {
+            case HEADER:      return PostgresDDLCreator.tableInfoSql(conn);
+            case COLUMNS:     return PostgresDDLCreator.columnsSql(conn);
+            case CONSTRAINTS: return PostgresDDLCreator.constraintsSql(conn);
+            case DEFAULTS:    return PostgresDDLCreator.defaultsSql(conn);
+            case INHERITS:    return PostgresDDLCreator.INHERITS_SQL;
+            case STORAGE:     return PostgresDDLCreator.storageSql(conn);
+            default:          throw new IllegalArgumentException(part.name());
+        }
+    }
+
+    public String schema() {
+        return schema;
+    }
+
+    public String table() {
+        return table;
+    }
+
+    /* ========================================================================= */
+    /* Части определения                                                         */
+    /* ========================================================================= */
+
+    PostgresDDLCreator.TableInfo info() throws SQLException {
+        if (info == null) {
+            info = PostgresDDLCreator.getTableInfo(conn, schema, table);
+        }
+        return info;
+    }
+
+    /**
+     * 'u' = UNLOGGED, 't' = TEMPORARY, 'p' = обычная.
+     */
+    public String persistence() throws SQLException {
+        return info().relpersistence;
+    }
+
+    public String owner() throws SQLException {
+        return info().owner;
+    }
+
+    /**
+     * PARTITION BY ... для partitioned-таблицы (PG 10+) или null.
+     */
+    public String partitionKey() throws SQLException {
+        return info().partitionKey;
+    }
+
+    /**
+     * FOR VALUES ... для секции (PG 10+) или null.
+     */
+    public String partitionBound() throws SQLException {
+        return info().relispartition ? info().partitionBound : null;
+    }
+
+    /**
+     * Объявления столбцов (для секции — пустой список: столбцы берутся от родителя).
+     */
+    public List<String> columns() throws SQLException {
+        if (columns == null) {
+            columns = info().relispartition
+                ? new ArrayList<>()
+                : PostgresDDLCreator.getColumnDefinitions(conn, schema, table,
+                        PostgresDDLCreator.getServerVersionNum(conn));
+        }
+        return columns;
+    }
+
+    /**
+     * ALTER TABLE ... ADD CONSTRAINT ... (как ddlxCreateConstraints), внешние ключи — последними.
+     */
+    public String constraints() throws SQLException {
+        return constraints(false) + constraints(true);
+    }
+
+    /**
+     * Только внешние ключи (foreignKeys = true) или все ограничения, кроме них (false):
+     * внешние ключи ссылаются на другие таблицы и выводятся после всех CREATE TABLE.
+     */
+    public String constraints(boolean foreignKeys) throws SQLException {
+        if (constraints == null) {
+            prefetch(EnumSet.of(Part.CONSTRAINTS));
+        }
+        return foreignKeys ? this.foreignKeys : constraints;
+    }
+
+    /**
+     * ALTER TABLE ... ALTER COLUMN ... SET DEFAULT ... (как ddlxAlterTableDefaults).
+     */
+    public String defaults() throws SQLException {
+        if (defaults == null) {
+            prefetch(EnumSet.of(Part.DEFAULTS));
+        }
+        return defaults;
+    }
+
+    /**
+     * Родительские таблицы через запятую (или пустая строка).
+     */
+    public String inherits() throws SQLException {
+        if (inherits == null) {
+            inherits = PostgresDDLCreator.getInheritsClause(conn, schema, table);
+        }
+        return inherits;
+    }
+
+    private PostgresDDLCreator.TableStorage storage() throws SQLException {
+        if (storage == null) {
+            storage = PostgresDDLCreator.getTableStorage(conn, schema, table);
+        }
+        return storage;
+    }
+
+    /**
+     * Содержимое WITH (...): reloptions таблицы и toast.* (или пустая строка).
+     */
+    public String storageOptions() throws SQLException {
+        return storage().options;
+    }
+
+    /**
+     * TABLESPACE, если не по умолчанию (или пустая строка).
+     */
+    public String tablespace() throws SQLException {
+        return storage().tablespace;
+    }
+
+    /**
+     * ALTER TABLE ... ALTER COLUMN ... SET STORAGE / SET COMPRESSION (или пустая строка).
+     */
+    public String columnStorage() throws SQLException {
+        return storage().columnStorage;
+    }
+
+    /* ========================================================================= */
+    /* Рендеринг                                                                 */
+    /* ========================================================================= */
+
+    /**
+     * Полный CREATE TABLE — то же, что PostgresDDLCreator.ddlxCreateTable.
+     */
+    public String createTable() throws SQLException {
+        return PostgresDDLCreator.renderCreateTable(this);
+    }
+
+    /**
+     * ALTER TABLE ... OWNER TO ... (как ddlxAlterOwner).
+     */
+    public String alterOwner() throws SQLException {
+        return PostgresDDLCreator.renderAlterOwner(schema, table, owner(),
+                PostgresDDLCreator.getServerVersionNum(conn));
+    }
+
+    /**
+     * Все разделы таблицы в порядке PostgresDDLCreator.main: CREATE TABLE, ограничения,
+     * DEFAULT и владелец. Недостающие части загружаются одним пакетом запросов.
+     */
+    public String render() throws SQLException {
+        prefetch(EnumSet.allOf(Part.class));
+        return createTable() + "\n" + constraints() + defaults() + alterOwner();
+    }
+}
@@ -0,0 +1,104 @@
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Кэш имён типов на соединение: (OID типа, typmod) -> format_type(oid, typmod).
+ *
+ * Запросы столбцов возвращают только atttypid и atttypmod; имя типа со всеми
+ * модификаторами (varchar(20), numeric(10,2), timestamp(3) with time zone, integer[],
+ * домены и enum со схемой, если она не в search_path) рисует сам сервер, но каждая
+ * пара запрашивается один раз на соединение. Недостающие пары добираются одним
+ * запросом на всю пачку (resolve), так что выгрузка схемы с тысячами столбцов
+ * обращается за именами типов один-два раза.
+ *
+ * Нужен компактной модели (CompactCatalog), которая хранит типы словарём различных пар;
+ * запросы столбцов PostgresDDLCreator получают имя прямо из format_type и кэш не используют.
+ * typmod передаётся как есть: -1 — «без модификатора» (bpchar, а не character(1)).
+ *
+ * Имя зависит от состояния каталога и search_path на момент запроса: после
+ * ALTER TYPE ... RENAME / SET SCHEMA или смены search_path кэш соединения нужно
+ * сбросить (invalidate).
+ */
+public class TypeNames {
+
+    private static final Map<Connection, TypeNames> CACHES =
+        Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final Connection conn;
+    private final Map<Long, String> names = new HashMap<>();
+
+    private TypeNames(Connection conn) {
+        this.conn = conn;
+    }
+
+    /**
+     * Кэш для соединения (создаётся при первом обращении).
+     */
+    public static TypeNames forConnection(Connection conn) {
+        return CACHES.computeIfAbsent(conn, TypeNames::new);
+    }
+
+    /**
+     * Забывает все имена, запомненные для соединения; следующее обращение перечитает их.
+     */
+    public static void invalidate(Connection conn) {
+        CACHES.remove(conn);
+    }
+
+    /**
+     * Ключ пары (OID, typmod).
+     */
+    public static long key(long typeOid, int typmod) {
+        return (typeOid << 32) | (typmod & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Догружает имена для ключей, которых ещё нет в кэше, — одним запросом.
+     */
+    public synchronized void resolve(Collection<Long> keys) throws SQLException {
+        List<Long> oids = new ArrayList<>();
+        List<Integer> typmods = new ArrayList<>();
+        for (long k : keys) {
+            if (!names.containsKey(k)) {
+                oids.add(k >>> 32);
+                typmods.add((int) k);
+            }
+        }
+        if (oids.isEmpty()) {
+            return;
+        }
+
+        String sql =
+            "SELECT m.oid, m.typmod, format_type(m.oid::oid, m.typmod) AS name " +
+            "FROM unnest(?::bigint[], ?::int[]) AS m(oid, typmod)";
+
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setArray(1, conn.createArrayOf("int8", oids.toArray()));
+            ps.setArray(2, conn.createArrayOf("int4", typmods.toArray()));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    names.put(key(rs.getLong("oid"), rs.getInt("typmod")), rs.getString("name"));
+                }
+            }
+        }
+    }
+
+    /**
+     * Имя типа; если пары нет в кэше — догружает её отдельным запросом.
+     */
+    public synchronized String name(long typeOid, int typmod) throws SQLException {
+        long k = key(typeOid, typmod);
+        String name = names.get(k);
+        if (name == null) {
+            resolve(Collections.singletonList(k));
+            name = names.get(k);
+        }
+        return name;
+    }
+}
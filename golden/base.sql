@@ -0,0 +1,42 @@
+CREATE TABLE "ddlx_golden"."parent" (
+    "id" serial NOT NULL,
+    "code" character varying(32) NOT NULL,
+    "qty" integer NOT NULL,
+    "price" numeric(12,2),
+    "note" text
+)
+WITH (fillfactor=70);
+ALTER TABLE "ddlx_golden"."parent" ADD CONSTRAINT "parent_code_key" UNIQUE (code);
+ALTER TABLE "ddlx_golden"."parent" ADD CONSTRAINT "parent_pkey" PRIMARY KEY (id);
+ALTER TABLE "ddlx_golden"."parent" ADD CONSTRAINT "parent_qty_check" CHECK (qty >= 0);
+ALTER TABLE "ddlx_golden"."parent" ALTER COLUMN "qty" SET DEFAULT 0;
+ALTER TABLE "ddlx_golden"."parent" ALTER COLUMN "note" SET DEFAULT 'new'::text;
+ALTER TABLE "ddlx_golden"."parent" OWNER TO "<owner>";
+
+CREATE UNLOGGED TABLE "ddlx_golden"."child" (
+    "id" bigserial NOT NULL,
+    "parent_id" integer,
+    "created" timestamp with time zone NOT NULL,
+    "kind" bpchar,
+    "grade" character(1)
+);
+ALTER TABLE "ddlx_golden"."child" ADD CONSTRAINT "child_pkey" PRIMARY KEY (id);
+ALTER TABLE "ddlx_golden"."child" ADD CONSTRAINT "child_parent_id_fkey" FOREIGN KEY (parent_id) REFERENCES ddlx_golden.parent(id);
+ALTER TABLE "ddlx_golden"."child" ALTER COLUMN "created" SET DEFAULT now();
+ALTER TABLE "ddlx_golden"."child" OWNER TO "<owner>";
+
+CREATE TABLE "ddlx_golden"."parent_archive" (
+    "id" integer NOT NULL,
+    "code" character varying(32) NOT NULL,
+    "qty" integer NOT NULL,
+    "price" numeric(12,2),
+    "note" text,
+    "archived_by" text NOT NULL
+)
+INHERITS ("ddlx_golden"."parent");
+ALTER TABLE "ddlx_golden"."parent_archive" ADD CONSTRAINT "parent_archive_by_check" CHECK (archived_by <> ''::text);
+ALTER TABLE "ddlx_golden"."parent_archive" ALTER COLUMN "id" SET DEFAULT nextval('ddlx_golden.parent_id_seq'::regclass);
+ALTER TABLE "ddlx_golden"."parent_archive" ALTER COLUMN "qty" SET DEFAULT 0;
+ALTER TABLE "ddlx_golden"."parent_archive" ALTER COLUMN "note" SET DEFAULT 'new'::text;
+ALTER TABLE "ddlx_golden"."parent_archive" OWNER TO "<owner>";
+
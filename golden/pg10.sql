@@ -0,0 +1,20 @@
+CREATE TABLE "ddlx_golden"."ticket" (
+    "id" bigint GENERATED ALWAYS AS IDENTITY NOT NULL,
+    "title" text NOT NULL
+);
+ALTER TABLE "ddlx_golden"."ticket" OWNER TO "<owner>";
+
+CREATE TABLE "ddlx_golden"."measure" (
+    "logdate" date NOT NULL,
+    "peak" integer
+)
+PARTITION BY RANGE (logdate);
+ALTER TABLE "ddlx_golden"."measure" ADD CONSTRAINT "measure_peak_check" CHECK (peak >= 0);
+ALTER TABLE "ddlx_golden"."measure" OWNER TO "<owner>";
+
+CREATE TABLE "ddlx_golden"."measure_2020" PARTITION OF "ddlx_golden"."measure"
+FOR VALUES FROM ('2020-01-01') TO ('2021-01-01');
+ALTER TABLE "ddlx_golden"."measure_2020" OWNER TO "<owner>";
+
+ALTER TABLE "ddlx_golden"."ticket" ALTER COLUMN "id" SET INCREMENT BY 10 SET MINVALUE 1 SET MAXVALUE 9223372036854775807 SET START WITH 1000 SET CACHE 5 SET NO CYCLE;
+SELECT pg_catalog.setval(pg_catalog.pg_get_serial_sequence('"ddlx_golden"."ticket"', 'id'), 1000, false);
@@ -0,0 +1,21 @@
+CREATE TABLE "ddlx_golden"."box" (
+    "w" numeric NOT NULL,
+    "h" numeric NOT NULL,
+    "area" numeric GENERATED ALWAYS AS ((w * h)) STORED
+);
+ALTER TABLE "ddlx_golden"."box" OWNER TO "<owner>";
+
+CREATE TABLE "ddlx_golden"."event" (
+    "id" bigint NOT NULL,
+    "happened" date NOT NULL,
+    "parent_id" integer
+)
+PARTITION BY RANGE (happened);
+ALTER TABLE "ddlx_golden"."event" ADD CONSTRAINT "event_pkey" PRIMARY KEY (id, happened);
+ALTER TABLE "ddlx_golden"."event" ADD CONSTRAINT "event_parent_id_fkey" FOREIGN KEY (parent_id) REFERENCES ddlx_golden.parent(id);
+ALTER TABLE "ddlx_golden"."event" OWNER TO "<owner>";
+
+CREATE TABLE "ddlx_golden"."event_2020" PARTITION OF "ddlx_golden"."event"
+FOR VALUES FROM ('2020-01-01') TO ('2021-01-01');
+ALTER TABLE "ddlx_golden"."event_2020" OWNER TO "<owner>";
+
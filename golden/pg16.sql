@@ -0,0 +1,5 @@
+DO $ddlx$BEGIN CREATE ROLE ddlx_golden_alice; EXCEPTION WHEN duplicate_object THEN NULL; END$ddlx$;
+ALTER ROLE ddlx_golden_alice WITH NOSUPERUSER INHERIT NOCREATEROLE NOCREATEDB LOGIN NOREPLICATION NOBYPASSRLS CONNECTION LIMIT -1;
+DO $ddlx$BEGIN CREATE ROLE ddlx_golden_staff; EXCEPTION WHEN duplicate_object THEN NULL; END$ddlx$;
+ALTER ROLE ddlx_golden_staff WITH NOSUPERUSER INHERIT NOCREATEROLE NOCREATEDB NOLOGIN NOREPLICATION NOBYPASSRLS CONNECTION LIMIT -1;
+GRANT ddlx_golden_staff TO ddlx_golden_alice WITH ADMIN TRUE, INHERIT FALSE, SET TRUE;
@@ -1,14 +1,31 @@
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
 
 public class PostgresDDLCreator {
 
     /**
      * Получаем числовую версию PostgreSQL:
      * например 90615 (9.6.15), 100002 (10.2), 120005 (12.5) и т.п.
+     * Версия читается один раз на соединение — вместе с выбором стратегии запросов.
      */
-    private static int getServerVersionNum(Connection conn) throws SQLException {
+    static int getServerVersionNum(Connection conn) throws SQLException {
+        return strategyFor(conn).version;
+    }
+
+    private static int readServerVersionNum(Connection conn) throws SQLException {
         try (Statement st = conn.createStatement();
              ResultSet rs = st.executeQuery("SHOW server_version_num")) {
             if (rs.next()) {
@@ -22,14 +39,27 @@ public class PostgresDDLCreator {
     /* 1) Аналог public.ddlx_create_table(p_schema text, p_table text)           */
     /* ========================================================================= */
     public static String ddlxCreateTable(Connection conn, String schema, String table) throws SQLException {
-        // Считываем версию, чтобы делать проверки типа #if PG_VERSION_GE(100000)
-        int version = getServerVersionNum(conn);
+        // Все части, из которых состоит CREATE TABLE, — одним обращением к серверу.
+        // Ограничения, DEFAULT и владельца вместе с таблицей отдаёт TableDefinition.render().
+        TableDefinition def = new TableDefinition(conn, schema, table)
+            .prefetch(TableDefinition.CREATE_TABLE_PARTS);
+        return renderCreateTable(def);
+    }
 
-        // 1. Получим базовую информацию о таблице (relkind, relpersistence).
-        TableInfo tableInfo = getTableInfo(conn, schema, table);
+    /**
+     * Собирает CREATE TABLE из частей TableDefinition. Каждая часть читается из каталога
+     * при первом обращении, так что здесь запрашивается ровно то, что попадает в DDL.
+     */
+    static String renderCreateTable(TableDefinition def) throws SQLException {
+        String schema = def.schema();
+        String table = def.table();
 
-        // 2. Собираем список столбцов. Внутри будет логика (SERIAL vs IDENTITY) с учётом версии.
-        List<String> columnDefs = getColumnDefinitions(conn, schema, table, version);
+        // 1. Получим базовую информацию о таблице (relkind, relpersistence, секционирование).
+        TableInfo tableInfo = def.info();
+
+        // 2. Собираем список столбцов (для секции они наследуются от родителя).
+        //    Внутри будет логика (SERIAL vs IDENTITY) с учётом версии.
+        List<String> columnDefs = def.columns();
 
         // 3. Формируем финальный DDL для CREATE TABLE
         StringBuilder ddl = new StringBuilder();
@@ -46,46 +76,58 @@ public class PostgresDDLCreator {
         ddl.append("CREATE ")
            .append(tableTypePrefix)
            .append("TABLE ")
-           .append(quoteIdentifier(schema)).append(".").append(quoteIdentifier(table))
-           .append(" (");
+           .append(quoteIdentifier(schema)).append(".").append(quoteIdentifier(table));
+
+        // PG 10+: секция partitioned-таблицы описывается через PARTITION OF родителя,
+        // столбцы и INHERITS берутся от родителя
+        if (tableInfo.relispartition) {
+            ddl.append(" PARTITION OF ").append(def.inherits())
+               .append("\n").append(tableInfo.partitionBound);
+        } else {
+            ddl.append(" (");
 
-        // Добавляем определения столбцов
-        for (int i = 0; i < columnDefs.size(); i++) {
-            ddl.append("\n    ").append(columnDefs.get(i));
-            if (i < columnDefs.size() - 1) {
-                ddl.append(",");
+            // Добавляем определения столбцов
+            for (int i = 0; i < columnDefs.size(); i++) {
+                ddl.append("\n    ").append(columnDefs.get(i));
+                if (i < columnDefs.size() - 1) {
+                    ddl.append(",");
+                }
             }
-        }
-        ddl.append("\n)");
+            ddl.append("\n)");
 
-        // Если PostgreSQL 10+ и таблица является partitioned (relkind='p'),
-        // то добавляем PARTITION BY
-        if (version >= 100000 && "p".equals(tableInfo.relkind)) {
-            String partitionExpr = getPartitionExpression(conn, schema, table);
-            ddl.append("\nPARTITION BY ").append(partitionExpr);
+            // Если есть INHERITS
+            String inheritsClause = def.inherits();
+            if (!inheritsClause.isEmpty()) {
+                ddl.append("\nINHERITS (").append(inheritsClause).append(")");
+            }
         }
-        // Иначе, в 9.x, нативного partitioned (relkind='p') не было.
 
-        // Если есть INHERITS
-        String inheritsClause = getInheritsClause(conn, schema, table);
-        if (!inheritsClause.isEmpty()) {
-            ddl.append("\nINHERITS (").append(inheritsClause).append(")");
+        // Если PostgreSQL 10+ и таблица является partitioned (relkind='p'),
+        // то добавляем PARTITION BY (стратегия 9.6 partitionKey не заполняет)
+        if (tableInfo.partitionKey != null) {
+            ddl.append("\nPARTITION BY ").append(tableInfo.partitionKey);
         }
 
         // Опции (WITH (...))
-        String tableOptions = getTableOptions(conn, schema, table);
+        String tableOptions = def.storageOptions();
         if (!tableOptions.isEmpty()) {
             ddl.append("\nWITH (").append(tableOptions).append(")");
         }
 
         // TABLESPACE
-        String tableSpace = getTableSpace(conn, schema, table);
+        String tableSpace = def.tablespace();
         if (!tableSpace.isEmpty()) {
             ddl.append("\nTABLESPACE ").append(tableSpace);
         }
 
         ddl.append(";");
 
+        // STORAGE / COMPRESSION столбцов, отличающиеся от умолчания
+        String columnStorage = def.columnStorage();
+        if (!columnStorage.isEmpty()) {
+            ddl.append("\n").append(columnStorage.substring(0, columnStorage.length() - 1));
+        }
+
         return ddl.toString();
     }
 
@@ -93,106 +135,117 @@ public class PostgresDDLCreator {
     /* 2) Аналог public.ddlx_create_constraints(p_schema text, p_table text)     */
     /* ========================================================================= */
     public static String ddlxCreateConstraints(Connection conn, String schema, String table) throws SQLException {
-        // Считываем версию, чтобы учесть #if PG_VERSION_GE(120000) или другие ветки
-        int version = getServerVersionNum(conn);
-
-        StringBuilder ddl = new StringBuilder();
-
-        // Соберём все constraint'ы (p, u, f, c) и сформируем ALTER TABLE ... ADD CONSTRAINT
-        // В некоторых версиях PG 12+ могут быть нюансы (например, CHECK ... NO INHERIT),
-        // поэтому покажем ветку if/else как пример.
-        String sql = 
-            "SELECT conname, contype, pg_get_constraintdef(c.oid, true) AS condef " +
-            "FROM pg_constraint c " +
-            "JOIN pg_class t ON t.oid = c.conrelid " +
-            "JOIN pg_namespace n ON n.oid = t.relnamespace " +
-            "WHERE n.nspname = ? " +
-            "  AND t.relname = ? " +
-            "  AND contype IN ('p','u','f','c') " +
-            "ORDER BY conname";
-
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (PreparedStatement ps = conn.prepareStatement(constraintsSql(conn))) {
             ps.setString(1, schema);
             ps.setString(2, table);
             try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    String conName = rs.getString("conname");
-                    String conDef  = rs.getString("condef");  // например: CHECK ( ... ), FOREIGN KEY ( ... ), и т.д.
-
-                    // Если хотим учесть PG12+ фичи (NO INHERIT, DEFERRABLE, и т.п.),
-                    // обычно pg_get_constraintdef() уже это включает. Но допустим, у нас
-                    // есть условие #if PG_VERSION_GE(120000). Для примера покажем:
-                    if (version >= 120000) {
-                        // PostgreSQL 12+ — допускаем, что conDef может содержать NO INHERIT
-                        // (тут просто оставляем, как есть, pg_get_constraintdef уже учитывает)
-                    } else {
-                        // PG < 12
-                        // возможно, у нас какая-то особая обработка, убираем "NO INHERIT" и т.д.
-                        // (просто пример, реальная логика зависит от скрипта)
-                        conDef = conDef.replace("NO INHERIT", "");
-                    }
-
-                    ddl.append("ALTER TABLE ")
-                       .append(quoteIdentifier(schema)).append(".").append(quoteIdentifier(table))
-                       .append(" ADD CONSTRAINT ")
-                       .append(quoteIdentifier(conName)).append(" ")
-                       .append(conDef).append(";\n");
-                }
+                return renderConstraints(rs, schema, table, getServerVersionNum(conn));
             }
         }
+    }
+
+    // Соберём все constraint'ы (p, u, f, c) и сформируем ALTER TABLE ... ADD CONSTRAINT.
+    // Унаследованные (INHERITS) и клонированные с родителя на секцию ограничения
+    // воссоздаёт сам CREATE TABLE, поэтому стратегия отбирает только собственные.
+    /** Запрос ограничений таблицы для версии сервера: параметры (schema, table). */
+    static String constraintsSql(Connection conn) throws SQLException {
+        return strategyFor(conn).constraintsSql();
+    }
 
+    /**
+     * ALTER TABLE ... ADD CONSTRAINT ... по строкам constraintsSql.
+     */
+    static String renderConstraints(ResultSet rs, String schema, String table, int version) throws SQLException {
+        StringBuilder ddl = new StringBuilder();
+        while (rs.next()) {
+            ddl.append(renderConstraint(rs, schema, table, version));
+        }
         return ddl.toString();
     }
 
+    /**
+     * То же, но внешние ключи отдельно: {прочие ограничения, FOREIGN KEY}. Внешние ключи
+     * ссылаются на другие таблицы, поэтому main выводит их после всех CREATE TABLE.
+     */
+    static String[] renderConstraintsSplit(ResultSet rs, String schema, String table, int version) throws SQLException {
+        StringBuilder other = new StringBuilder();
+        StringBuilder foreignKeys = new StringBuilder();
+        while (rs.next()) {
+            ("f".equals(rs.getString("contype")) ? foreignKeys : other)
+                .append(renderConstraint(rs, schema, table, version));
+        }
+        return new String[] { other.toString(), foreignKeys.toString() };
+    }
+
+    /**
+     * ALTER TABLE ... ADD CONSTRAINT ... для текущей строки constraintsSql.
+     */
+    private static String renderConstraint(ResultSet rs, String schema, String table, int version) throws SQLException {
+        String conName = rs.getString("conname");
+        String conDef  = rs.getString("condef");  // например: CHECK ( ... ), FOREIGN KEY ( ... ), и т.д.
+
+        // Если хотим учесть PG12+ фичи (NO INHERIT, DEFERRABLE, и т.п.),
+        // обычно pg_get_constraintdef() уже это включает. Но допустим, у нас
+        // есть условие #if PG_VERSION_GE(120000). Для примера покажем:
+        if (version >= 120000) {
+            // PostgreSQL 12+ — допускаем, что conDef может содержать NO INHERIT
+            // (тут просто оставляем, как есть, pg_get_constraintdef уже учитывает)
+        } else {
+            // PG < 12
+            // возможно, у нас какая-то особая обработка, убираем "NO INHERIT" и т.д.
+            // (просто пример, реальная логика зависит от скрипта)
+            conDef = conDef.replace("NO INHERIT", "");
+        }
+
+        return "ALTER TABLE " + quoteIdentifier(schema) + "." + quoteIdentifier(table)
+             + " ADD CONSTRAINT " + quoteIdentifier(conName) + " " + conDef + ";\n";
+    }
+
     /* ========================================================================= */
     /* 3) Аналог public.ddlx_alter_table_defaults(p_schema text, p_table text)   */
     /* ========================================================================= */
     public static String ddlxAlterTableDefaults(Connection conn, String schema, String table) throws SQLException {
-        int version = getServerVersionNum(conn);
-
-        StringBuilder ddl = new StringBuilder();
-
-        // В оригинальном скрипте есть #if PG_VERSION_GE(100000) в некоторых местах для defaults.
-        // Обычно difference в том, что PG10+ может иметь identity-столбцы, но они не нуждаются в DEFAULT.
-        // Однако, если хотим явно учесть, приводим пример.
-
-        String sql = 
-            "SELECT column_name, column_default " +
-            "FROM information_schema.columns " +
-            "WHERE table_schema = ? AND table_name = ? " +
-            "  AND column_default IS NOT NULL " +
-            "ORDER BY ordinal_position";
-
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (PreparedStatement ps = conn.prepareStatement(defaultsSql(conn))) {
             ps.setString(1, schema);
             ps.setString(2, table);
             try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    String colName = rs.getString("column_name");
-                    String colDefault = rs.getString("column_default");
-
-                    // Проверка на версии, если, например, хотим уберечься от "IDENTITY columns",
-                    // которые в PG10+ вместо DEFAULT. 
-                    // Для примера: если version < 100000, оставляем всё как есть;
-                    // если version >= 100000, тоже обычно всё ок. 
-                    // Но предположим, у нас логика: "не выставлять DEFAULT, если оно = nextval(...)"
-                    // - чисто условно.
-                    if (version >= 100000 && colDefault.contains("nextval(")) {
-                        // Возможно, пропустим. (Это демонстрация, в реальном скрипте действуйте по ситуации.)
-                        continue;
-                    }
-
-                    ddl.append("ALTER TABLE ")
-                       .append(quoteIdentifier(schema)).append(".").append(quoteIdentifier(table))
-                       .append(" ALTER COLUMN ")
-                       .append(quoteIdentifier(colName))
-                       .append(" SET DEFAULT ")
-                       .append(colDefault)
-                       .append(";\n");
-                }
+                return renderDefaults(rs, schema, table);
             }
         }
+    }
+
+    /**
+     * Запрос DEFAULT столбцов для версии сервера: параметры (schema, table).
+     * IDENTITY-столбцы DEFAULT не имеют, вычисляемые (PG 12+) стратегия отсекает,
+     * у SERIAL-столбцов is_serial = true.
+     */
+    static String defaultsSql(Connection conn) throws SQLException {
+        return strategyFor(conn).defaultsSql();
+    }
+
+    /**
+     * ALTER TABLE ... ALTER COLUMN ... SET DEFAULT ... по строкам defaultsSql.
+     */
+    static String renderDefaults(ResultSet rs, String schema, String table) throws SQLException {
+        StringBuilder ddl = new StringBuilder();
+        while (rs.next()) {
+            String colName = rs.getString("column_name");
+            String colDefault = rs.getString("column_default");
+
+            // SERIAL-столбец получает DEFAULT nextval(...) от самого CREATE TABLE (в любой версии);
+            // прочие nextval (чужая или переименованная последовательность) выгружаются как есть
+            if (rs.getBoolean("is_serial")) {
+                continue;
+            }
 
+            ddl.append("ALTER TABLE ")
+               .append(quoteIdentifier(schema)).append(".").append(quoteIdentifier(table))
+               .append(" ALTER COLUMN ")
+               .append(quoteIdentifier(colName))
+               .append(" SET DEFAULT ")
+               .append(colDefault)
+               .append(";\n");
+        }
         return ddl.toString();
     }
 
@@ -204,12 +257,15 @@ public class PostgresDDLCreator {
         // добавляют особый синтаксис, в более старых PG - другой. 
         // Здесь покажем ветку if/else:
 
-        int version = getServerVersionNum(conn);
+        return renderAlterOwner(schema, table, getTableOwner(conn, schema, table), getServerVersionNum(conn));
+    }
 
+    /**
+     * ALTER TABLE ... OWNER TO ... по уже известному владельцу.
+     */
+    static String renderAlterOwner(String schema, String table, String ownerName, int version) {
         StringBuilder ddl = new StringBuilder();
 
-        // Для упрощения - метод получения реального владельца
-        String ownerName = getTableOwner(conn, schema, table);
         if (ownerName == null || ownerName.isEmpty()) {
             return ""; // если не удалось определить владельца, ничего не делаем
         }
@@ -237,298 +293,1954 @@ public class PostgresDDLCreator {
     }
 
     /* ========================================================================= */
-    /* Вспомогательные методы (как в вашем большом коде)                         */
+    /* 4a) Полный DDL таблицы: CREATE TABLE, ограничения, DEFAULT, владелец      */
     /* ========================================================================= */
 
     /**
-     * Содержит relkind (p, r и т.п.) и relpersistence ('u' = unlogged, 't' = temp)
+     * Каноническая выгрузка одной таблицы — разделы 1–4 в порядке main, все части одним
+     * пакетом запросов (TableDefinition.render()). На ней построены LockSafeExporter,
+     * FanOutExporter, ResumableExporter и AsyncDdlPublisher; таймауты, повторы
+     * и пул соединений — их забота.
      */
-    private static class TableInfo {
-        String relkind;        // 'r', 'p', ...
-        String relpersistence; // 'u', 't', ...
+    public static String ddlxExportTable(Connection conn, String schema, String table) throws SQLException {
+        return new TableDefinition(conn, schema, table).render();
     }
 
+    /* ========================================================================= */
+    /* 5) Последовательности схемы: CREATE SEQUENCE, OWNED BY и setval           */
+    /* ========================================================================= */
+
     /**
-     * Определяем тип таблицы из pg_class + pg_namespace
+     * Выгружает все последовательности схемы одним запросом (pg_sequence + pg_depend).
+     * - последовательность SERIAL-столбца (см. serialCondition) создаётся самим CREATE TABLE,
+     *   поэтому для неё выдаём только ALTER SEQUENCE с параметрами;
+     * - IDENTITY-последовательность тоже создаётся таблицей, её параметры задаются через
+     *   ALTER TABLE ... ALTER COLUMN ... SET ..., а setval — через pg_get_serial_sequence;
+     * - прочие — CREATE SEQUENCE со всеми параметрами и, если есть владелец, OWNED BY.
+     * В конце всегда идёт setval, чтобы восстановленные данные не получали повторных id.
      */
-    private static TableInfo getTableInfo(Connection conn, String schema, String table) throws SQLException {
-        TableInfo info = new TableInfo();
+    public static String ddlxCreateSequences(Connection conn, String schema) throws SQLException {
+        return ddlxCreateSequences(conn, schema, ObjectFilter.all());
+    }
+
+    /**
+     * То же для последовательностей, прошедших фильтр: принадлежащие таблице (OWNED BY,
+     * SERIAL, IDENTITY) отбираются вместе со своей таблицей, остальные — по собственному
+     * имени и relkind 'S', как любое отношение.
+     */
+    public static String ddlxCreateSequences(Connection conn, String schema, ObjectFilter filter) throws SQLException {
+        return ddlxCreateSequences(conn, schema, filter, null);
+    }
+
+    /**
+     * Последовательности, разделённые по месту в выгрузке: beforeTables = true — только
+     * CREATE SEQUENCE тех, что не создаёт CREATE TABLE (на них могут ссылаться DEFAULT
+     * любой таблицы, поэтому они идут до таблиц); false — всё остальное: параметры
+     * SERIAL и IDENTITY, OWNED BY и setval (после таблиц); null — всё вместе.
+     */
+    public static String ddlxCreateSequences(Connection conn, String schema, ObjectFilter filter,
+                                             Boolean beforeTables) throws SQLException {
+        boolean before = beforeTables == null || beforeTables;
+        boolean after = beforeTables == null || !beforeTables;
+        int version = getServerVersionNum(conn);
+        if (version < 100000) {
+            return ddlxCreateSequencesLegacy(conn, schema, filter, before, after);
+        }
+
+        StringBuilder ddl = new StringBuilder();
+
         String sql = 
-            "SELECT c.relkind, c.relpersistence " +
-            "FROM pg_class c " +
+            "SELECT c.relname AS seq_name, format_type(s.seqtypid, NULL) AS seq_type, " +
+            "       s.seqstart, s.seqincrement, s.seqmin, s.seqmax, s.seqcache, s.seqcycle, " +
+            "       ps.last_value, " +
+            "       d.deptype, tn.nspname AS owner_schema, t.relname AS owner_table, " +
+            "       a.attname AS owner_column, " +
+            "       COALESCE(d.deptype = 'a' AND " + serialCondition("a", "t", "c") + ", false) AS is_serial " +
+            "FROM pg_sequence s " +
+            "JOIN pg_class c ON c.oid = s.seqrelid " +
             "JOIN pg_namespace n ON n.oid = c.relnamespace " +
-            "WHERE n.nspname = ? AND c.relname = ?";
+            "LEFT JOIN pg_sequences ps ON ps.schemaname = n.nspname AND ps.sequencename = c.relname " +
+            "LEFT JOIN pg_depend d ON d.objid = c.oid " +
+            "                     AND d.classid = 'pg_class'::regclass " +
+            "                     AND d.refclassid = 'pg_class'::regclass " +
+            "                     AND d.deptype IN ('a','i') " +
+            "LEFT JOIN pg_class t ON t.oid = d.refobjid " +
+            "LEFT JOIN pg_namespace tn ON tn.oid = t.relnamespace " +
+            "LEFT JOIN pg_attribute a ON a.attrelid = d.refobjid AND a.attnum = d.refobjsubid " +
+            "WHERE n.nspname = ? " + sequenceFilter(filter) +
+            "ORDER BY c.relname";
 
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, schema);
-            ps.setString(2, table);
+            bindSequenceFilter(ps, filter, 2);
             try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    info.relkind = rs.getString("relkind");
-                    info.relpersistence = rs.getString("relpersistence");
+                while (rs.next()) {
+                    String seqName = quoteIdentifier(schema) + "." + quoteIdentifier(rs.getString("seq_name"));
+                    String depType = rs.getString("deptype");
+                    String ownerTable = null;
+                    String ownedBy = null;
+                    if (depType != null) {
+                        ownerTable = quoteIdentifier(rs.getString("owner_schema")) + "."
+                                   + quoteIdentifier(rs.getString("owner_table"));
+                        ownedBy = ownerTable + "." + quoteIdentifier(rs.getString("owner_column"));
+                    }
+
+                    String options =
+                          " INCREMENT BY " + rs.getLong("seqincrement")
+                        + " MINVALUE " + rs.getLong("seqmin")
+                        + " MAXVALUE " + rs.getLong("seqmax")
+                        + " START WITH " + rs.getLong("seqstart")
+                        + " CACHE " + rs.getLong("seqcache")
+                        + (rs.getBoolean("seqcycle") ? " CYCLE" : " NO CYCLE");
+
+                    // Последовательность IDENTITY-столбца при восстановлении может получить другое
+                    // имя, поэтому setval для неё адресуется через pg_get_serial_sequence
+                    String seqRef = quoteLiteral(seqName);
+
+                    if ("i".equals(depType)) {
+                        // IDENTITY: последовательность создаётся вместе со столбцом, её параметры
+                        // задаются через ALTER COLUMN ... SET <параметр> (тип — по типу столбца)
+                        seqRef = "pg_catalog.pg_get_serial_sequence(" + quoteLiteral(ownerTable) + ", "
+                               + quoteLiteral(rs.getString("owner_column")) + ")";
+                        if (!after) {
+                            continue;
+                        }
+                        ddl.append("ALTER TABLE ").append(ownerTable)
+                           .append(" ALTER COLUMN ").append(quoteIdentifier(rs.getString("owner_column")))
+                           .append(" SET INCREMENT BY ").append(rs.getLong("seqincrement"))
+                           .append(" SET MINVALUE ").append(rs.getLong("seqmin"))
+                           .append(" SET MAXVALUE ").append(rs.getLong("seqmax"))
+                           .append(" SET START WITH ").append(rs.getLong("seqstart"))
+                           .append(" SET CACHE ").append(rs.getLong("seqcache"))
+                           .append(rs.getBoolean("seqcycle") ? " SET CYCLE" : " SET NO CYCLE")
+                           .append(";\n");
+                    } else if (rs.getBoolean("is_serial")) {
+                        // SERIAL: CREATE TABLE уже создал последовательность, уточняем параметры
+                        if (!after) {
+                            continue;
+                        }
+                        ddl.append("ALTER SEQUENCE ").append(seqName)
+                           .append(" AS ").append(rs.getString("seq_type")).append(options).append(";\n");
+                    } else {
+                        if (before) {
+                            ddl.append("CREATE SEQUENCE ").append(seqName)
+                               .append(" AS ").append(rs.getString("seq_type")).append(options).append(";\n");
+                        }
+                        if (ownedBy != null && after) {
+                            ddl.append("ALTER SEQUENCE ").append(seqName)
+                               .append(" OWNED BY ").append(ownedBy).append(";\n");
+                        }
+                    }
+
+                    if (!after) {
+                        continue;
+                    }
+                    // last_value = NULL => nextval ещё не вызывался, начнём со START
+                    long lastValue = rs.getLong("last_value");
+                    boolean isCalled = !rs.wasNull();
+                    appendSetval(ddl, seqRef, isCalled ? lastValue : rs.getLong("seqstart"), isCalled);
                 }
             }
         }
-        return info;
+
+        return ddl.toString();
     }
 
     /**
-     * Извлекаем владельца таблицы
+     * Условие отбора последовательностей: по таблице-владельцу (t, tn), если она есть;
+     * иначе по самой последовательности (c, n) или по таблице, чей DEFAULT на неё ссылается
+     * (nextval('...'::regclass) записывает зависимость pg_attrdef -> последовательность),
+     * так что чужая последовательность DEFAULT выгружается вместе с отобранной таблицей.
+     * Параметры — bindSequenceFilter.
+     */
+    private static String sequenceFilter(ObjectFilter filter) {
+        return "AND ((t.oid IS NOT NULL" + filter.sql("t", "tn") + ") " +
+               "  OR (t.oid IS NULL" + filter.sql("c", "n") + ") " +
+               "  OR (t.oid IS NULL AND EXISTS ( " +
+               "        SELECT 1 FROM pg_depend rd " +
+               "        JOIN pg_attrdef rad ON rad.oid = rd.objid " +
+               "        JOIN pg_class rt ON rt.oid = rad.adrelid " +
+               "        JOIN pg_namespace rtn ON rtn.oid = rt.relnamespace " +
+               "        WHERE rd.classid = 'pg_attrdef'::regclass " +
+               "          AND rd.refclassid = 'pg_class'::regclass " +
+               "          AND rd.refobjid = c.oid" + filter.sql("rt", "rtn") + "))) ";
+    }
+
+    /**
+     * Параметры sequenceFilter (фильтр входит в условие трижды), начиная с index.
+     */
+    private static void bindSequenceFilter(PreparedStatement ps, ObjectFilter filter, int index) throws SQLException {
+        filter.bind(ps, filter.bind(ps, filter.bind(ps, index)));
+    }
+
+    /**
+     * PG < 10: каталога pg_sequence ещё нет, параметры хранятся в самой последовательности.
+     * Список и владельцев берём одним запросом, а значения — отдельным SELECT на каждую
+     * последовательность (иначе в 9.x их не прочитать).
      */
-    private static String getTableOwner(Connection conn, String schema, String table) throws SQLException {
+    private static String ddlxCreateSequencesLegacy(Connection conn, String schema, ObjectFilter filter,
+                                                    boolean before, boolean after) throws SQLException {
+        StringBuilder ddl = new StringBuilder();
+
         String sql = 
-            "SELECT pg_get_userbyid(relowner) AS owner " +
+            "SELECT c.relname AS seq_name, d.deptype, " +
+            "       tn.nspname AS owner_schema, t.relname AS owner_table, " +
+            "       a.attname AS owner_column, " +
+            "       COALESCE(d.deptype = 'a' AND " + serialCondition("a", "t", "c") + ", false) AS is_serial " +
             "FROM pg_class c " +
             "JOIN pg_namespace n ON n.oid = c.relnamespace " +
-            "WHERE n.nspname = ? AND c.relname = ?";
+            "LEFT JOIN pg_depend d ON d.objid = c.oid " +
+            "                     AND d.classid = 'pg_class'::regclass " +
+            "                     AND d.refclassid = 'pg_class'::regclass " +
+            "                     AND d.deptype = 'a' " +
+            "LEFT JOIN pg_class t ON t.oid = d.refobjid " +
+            "LEFT JOIN pg_namespace tn ON tn.oid = t.relnamespace " +
+            "LEFT JOIN pg_attribute a ON a.attrelid = d.refobjid AND a.attnum = d.refobjsubid " +
+            "WHERE n.nspname = ? AND c.relkind = 'S' " + sequenceFilter(filter) +
+            "ORDER BY c.relname";
 
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, schema);
-            ps.setString(2, table);
+            bindSequenceFilter(ps, filter, 2);
             try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getString("owner");
+                while (rs.next()) {
+                    String seqName = quoteIdentifier(schema) + "." + quoteIdentifier(rs.getString("seq_name"));
+                    boolean serial = rs.getBoolean("is_serial");
+                    if (serial && !after) {
+                        continue; // последовательность SERIAL создаёт CREATE TABLE
+                    }
+
+                    try (Statement st = conn.createStatement();
+                         ResultSet seq = st.executeQuery(
+                             "SELECT start_value, increment_by, min_value, max_value, cache_value, " +
+                             "       is_cycled, last_value, is_called FROM " + seqName)) {
+                        if (!seq.next()) {
+                            continue;
+                        }
+                        String options =
+                              " INCREMENT BY " + seq.getLong("increment_by")
+                            + " MINVALUE " + seq.getLong("min_value")
+                            + " MAXVALUE " + seq.getLong("max_value")
+                            + " START WITH " + seq.getLong("start_value")
+                            + " CACHE " + seq.getLong("cache_value")
+                            + (seq.getBoolean("is_cycled") ? " CYCLE" : " NO CYCLE");
+
+                        if (serial || before) {
+                            ddl.append(serial ? "ALTER SEQUENCE " : "CREATE SEQUENCE ")
+                               .append(seqName).append(options).append(";\n");
+                        }
+                        if (!after) {
+                            continue;
+                        }
+                        if (!serial && rs.getString("deptype") != null) {
+                            ddl.append("ALTER SEQUENCE ").append(seqName)
+                               .append(" OWNED BY ")
+                               .append(quoteIdentifier(rs.getString("owner_schema"))).append(".")
+                               .append(quoteIdentifier(rs.getString("owner_table"))).append(".")
+                               .append(quoteIdentifier(rs.getString("owner_column")))
+                               .append(";\n");
+                        }
+                        appendSetval(ddl, quoteLiteral(seqName), seq.getLong("last_value"), seq.getBoolean("is_called"));
+                    }
                 }
             }
         }
-        return null;
+
+        return ddl.toString();
     }
 
     /**
-     * Собираем список определений столбцов с учётом:
-     * - version >= 10 => использовать IDENTITY, иначе SERIAL
-     * - NOT NULL
-     * - прочие особенности
+     * SELECT pg_catalog.setval(seqRef, value, is_called); seqRef — уже готовое SQL-выражение
+     * ('schema.seq' или pg_get_serial_sequence(...)).
      */
-    private static List<String> getColumnDefinitions(Connection conn, String schema, String table, int version) throws SQLException {
-        List<String> columns = new ArrayList<>();
+    private static void appendSetval(StringBuilder ddl, String seqRef, long value, boolean isCalled) {
+        ddl.append("SELECT pg_catalog.setval(")
+           .append(seqRef).append(", ")
+           .append(value).append(", ")
+           .append(isCalled).append(");\n");
+    }
 
-        // Проверим, есть ли поля is_identity и identity_generation в information_schema (это PG 10+).
-        // В PG < 10 их нет, поэтому при version < 100000 игнорируем.
-        // Чтобы упростить, сделаем запрос, где для PG<10 подставим NULL AS is_identity, NULL AS identity_generation.
+    /* ========================================================================= */
+    /* 6) Представления, материализованные представления и функции              */
+    /* ========================================================================= */
 
-        String identityFields = (version >= 100000)
-            ? "is_identity, identity_generation,"
-            : "NULL AS is_identity, NULL AS identity_generation,";
+    /**
+     * CREATE VIEW / CREATE MATERIALIZED VIEW для всех представлений схемы.
+     * Определения и зависимости (pg_rewrite + pg_depend) читаются одним запросом,
+     * затем представления упорядочиваются так, чтобы каждое шло после тех, от которых
+     * зависит. Базовые таблицы создаются раньше (ddlxCreateTable), поэтому этот блок
+     * выводится после таблиц и функций.
+     * Материализованные представления создаются WITH NO DATA, REFRESH — в конце блока.
+     */
+    public static String ddlxCreateViews(Connection conn, String schema) throws SQLException {
+        return ddlxCreateViews(conn, schema, ObjectFilter.all());
+    }
 
+    /**
+     * То же для представлений, прошедших фильтр (по имени, relkind 'v' / 'm' и владельцу).
+     */
+    public static String ddlxCreateViews(Connection conn, String schema, ObjectFilter filter) throws SQLException {
         String sql = 
-            "SELECT column_name, data_type, is_nullable, " +
-            "       character_maximum_length, numeric_precision, numeric_scale, " +
-                    identityFields +
-            "       column_default " +
-            "FROM information_schema.columns " +
-            "WHERE table_schema = ? AND table_name = ? " +
-            "ORDER BY ordinal_position";
+            "SELECT c.oid::bigint AS oid, c.relname, c.relkind, " +
+            "       pg_get_viewdef(c.oid, true) AS viewdef, " +
+            "       ARRAY(SELECT DISTINCT d.refobjid::bigint " +
+            "               FROM pg_rewrite r " +
+            "               JOIN pg_depend d ON d.classid = 'pg_rewrite'::regclass " +
+            "                               AND d.objid = r.oid " +
+            "                               AND d.refclassid = 'pg_class'::regclass " +
+            "              WHERE r.ev_class = c.oid AND d.refobjid <> c.oid) AS deps " +
+            "FROM pg_class c " +
+            "JOIN pg_namespace n ON n.oid = c.relnamespace " +
+            "WHERE n.nspname = ? AND c.relkind IN ('v','m')" + filter.sql("c", "n") + " " +
+            "ORDER BY c.relname";
+
+        // oid -> {relname, relkind, viewdef}; порядок вставки = порядок по имени
+        Map<Long, String[]> views = new LinkedHashMap<>();
+        Map<Long, List<Long>> deps = new HashMap<>();
 
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, schema);
-            ps.setString(2, table);
+            filter.bind(ps, 2);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
-                    String colName       = rs.getString("column_name");
-                    String dataType      = rs.getString("data_type");
-                    String isNullable    = rs.getString("is_nullable");
-                    Integer charLen      = (Integer) rs.getObject("character_maximum_length");
-                    Integer numPrec      = (Integer) rs.getObject("numeric_precision");
-                    Integer numScale     = (Integer) rs.getObject("numeric_scale");
-                    String isIdentity    = rs.getString("is_identity");         // "YES"/"NO" (или null)
-                    String identityGen   = rs.getString("identity_generation"); // "ALWAYS"/"BY DEFAULT" (или null)
-                    String colDefault    = rs.getString("column_default");
-
-                    // Определяем базовый тип (varchar(...), numeric(...), и т.п.)
-                    String columnType = buildColumnType(dataType, charLen, numPrec, numScale);
-
-                    // --- Проверяем автоинкремент (IDENTITY или SERIAL) ---
-                    String identityClause = "";
-                    boolean usedSerial = false;
-
-                    if (version >= 100000) {
-                        // PG 10+: если is_identity=YES, делаем IDENTITY
-                        if ("YES".equalsIgnoreCase(isIdentity)) {
-                            if ("ALWAYS".equalsIgnoreCase(identityGen)) {
-                                identityClause = " GENERATED ALWAYS AS IDENTITY";
-                            } else {
-                                identityClause = " GENERATED BY DEFAULT AS IDENTITY";
-                            }
-                        }
-                        // Если is_identity=NO, но column_default содержит nextval(...), тогда возможно это "старый" SERIAL
-                        else if (colDefault != null && colDefault.matches(".*nextval\\(.*\\).*")) {
-                            // Упрощённо определим SERIAL vs BIGSERIAL
-                            // (в реальном коде чаще смотрят, какой у столбца тип: integer/bigint)
-                            if ("bigint".equalsIgnoreCase(dataType)) {
-                                columnType = "bigserial";
-                            } else if ("integer".equalsIgnoreCase(dataType)) {
-                                columnType = "serial";
-                            }
-                            usedSerial = true;
-                        }
-                    } else {
-                        // PG < 10: нет is_identity
-                        // Если colDefault ~ nextval(...), значит SERIAL/BIGSERIAL
-                        if (colDefault != null && colDefault.matches(".*nextval\\(.*\\).*")) {
-                            if ("bigint".equalsIgnoreCase(dataType)) {
-                                columnType = "bigserial";
-                            } else if ("integer".equalsIgnoreCase(dataType)) {
-                                columnType = "serial";
-                            }
-                            usedSerial = true;
-                        }
+                    long oid = rs.getLong("oid");
+                    views.put(oid, new String[] {
+                        rs.getString("relname"), rs.getString("relkind"), rs.getString("viewdef")
+                    });
+                    List<Long> refs = new ArrayList<>();
+                    for (Object ref : (Object[]) rs.getArray("deps").getArray()) {
+                        refs.add(((Number) ref).longValue());
                     }
+                    deps.put(oid, refs);
+                }
+            }
+        }
+
+        StringBuilder ddl = new StringBuilder();
+        StringBuilder refresh = new StringBuilder();
 
-                    // Собираем итоговое объявление столбца
-                    StringBuilder colDef = new StringBuilder();
-                    colDef.append(quoteIdentifier(colName)).append(" ").append(columnType);
+        for (long oid : orderByDependencies(views.keySet(), deps)) {
+            String[] v = views.get(oid);
+            String name = quoteIdentifier(schema) + "." + quoteIdentifier(v[0]);
+            String body = stripTrailingSemicolon(v[2]);
 
-                    if (!identityClause.isEmpty()) {
-                        colDef.append(identityClause);
-                    }
+            if ("m".equals(v[1])) {
+                ddl.append("CREATE MATERIALIZED VIEW ").append(name).append(" AS\n")
+                   .append(body).append("\nWITH NO DATA;\n");
+                refresh.append("REFRESH MATERIALIZED VIEW ").append(name).append(";\n");
+            } else {
+                ddl.append("CREATE VIEW ").append(name).append(" AS\n")
+                   .append(body).append(";\n");
+            }
+        }
 
-                    // NOT NULL (общая логика для всех версий)
-                    if ("NO".equalsIgnoreCase(isNullable)) {
-                        colDef.append(" NOT NULL");
-                    }
+        return ddl.append(refresh).toString();
+    }
 
-                    // В вашем исходном скрипте DEFAULT выносите в отдельную функцию ddlx_alter_table_defaults,
-                    // так что здесь **не** добавляем "DEFAULT ...", если это не IDENTITY/SERIAL.
-                    // Но если хотите, можете условно добавить.
+    /**
+     * CREATE VIEW / CREATE MATERIALIZED VIEW (WITH NO DATA и REFRESH) одного представления
+     * или пустая строка, если его нет. Для точечной перерисовки (см. DdlWatcher).
+     */
+    public static String ddlxCreateView(Connection conn, String schema, String view) throws SQLException {
+        String sql =
+            "SELECT c.relkind, pg_get_viewdef(c.oid, true) AS viewdef " +
+            "FROM pg_class c " +
+            "JOIN pg_namespace n ON n.oid = c.relnamespace " +
+            "WHERE n.nspname = ? AND c.relname = ? AND c.relkind IN ('v','m')";
 
-                    columns.add(colDef.toString());
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, schema);
+            ps.setString(2, view);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    return "";
                 }
+                String name = quoteIdentifier(schema) + "." + quoteIdentifier(view);
+                String body = stripTrailingSemicolon(rs.getString("viewdef"));
+                if ("m".equals(rs.getString("relkind"))) {
+                    return "CREATE MATERIALIZED VIEW " + name + " AS\n" + body + "\nWITH NO DATA;\n"
+                         + "REFRESH MATERIALIZED VIEW " + name + ";\n";
+                }
+                return "CREATE VIEW " + name + " AS\n" + body + ";\n";
             }
         }
+    }
 
-        return columns;
+    /**
+     * CREATE FUNCTION / PROCEDURE для всех функций схемы одним запросом (pg_get_functiondef).
+     * Агрегаты и функции расширений пропускаются. check_function_bodies отключается,
+     * чтобы порядок функций между собой не имел значения.
+     */
+    public static String ddlxCreateFunctions(Connection conn, String schema) throws SQLException {
+        return ddlxCreateFunctions(conn, schema, null);
     }
 
     /**
-     * Если таблица является partitioned (relkind='p'), вернём PARTITION BY ...
-     * В PostgreSQL 10+ есть pg_partitioned_table, и т.д.  
-     * Здесь — упрощённая заглушка.
+     * Функции схемы, отобранные по сигнатуре: usesTableRowTypes = false — те, что можно
+     * создать до таблиц (тела с check_function_bodies = false не проверяются, так что
+     * DEFAULT и CHECK таблиц могут на них ссылаться); true — те, у которых в аргументах
+     * или результате строковый тип таблицы или представления (создаются после них);
+     * null — все.
      */
-    private static String getPartitionExpression(Connection conn, String schema, String table) throws SQLException {
-        // В реальном коде вы бы делали SELECT из pg_partitioned_table и pg_attribute,
-        // но здесь для примера вернём "RANGE (some_column)".
-        return "RANGE (some_column)";
+    public static String ddlxCreateFunctions(Connection conn, String schema, Boolean usesTableRowTypes) throws SQLException {
+        return ddlxCreateFunctions(conn, schema, usesTableRowTypes, ObjectFilter.all());
     }
 
     /**
-     * Проверяем, наследует ли таблица от другой через pg_inherits.
+     * То же, но с фильтром: к функциям применяются его маски схем и владельцы
+     * (ObjectFilter.schemaOwnerSql по pronamespace / proowner).
      */
-    private static String getInheritsClause(Connection conn, String schema, String table) throws SQLException {
+    public static String ddlxCreateFunctions(Connection conn, String schema, Boolean usesTableRowTypes,
+                                             ObjectFilter filter) throws SQLException {
+        String rowTypeCondition = "";
+        if (usesTableRowTypes != null) {
+            rowTypeCondition =
+                "  AND " + (usesTableRowTypes ? "" : "NOT ") + "EXISTS ( " +
+                "      SELECT 1 FROM pg_depend d " +
+                "        JOIN pg_type t ON t.oid = d.refobjid " +
+                "        LEFT JOIN pg_type et ON et.oid = t.typelem " +
+                "        JOIN pg_class rc ON rc.oid = coalesce(NULLIF(t.typrelid, 0), et.typrelid) " +
+                "       WHERE d.classid = 'pg_proc'::regclass AND d.objid = p.oid " +
+                "         AND d.refclassid = 'pg_type'::regclass AND rc.relkind <> 'c') ";
+        }
+
         String sql = 
-            "SELECT pn.nspname AS parent_schema, pc.relname AS parent_table " +
-            "FROM pg_inherits i " +
-            "JOIN pg_class c ON c.oid = i.inhrelid " +
-            "JOIN pg_class pc ON pc.oid = i.inhparent " +
-            "JOIN pg_namespace pn ON pn.oid = pc.relnamespace " +
-            "JOIN pg_namespace cn ON cn.oid = c.relnamespace " +
-            "WHERE cn.nspname = ? AND c.relname = ?";
+            "SELECT pg_get_functiondef(p.oid) AS funcdef " +
+            "FROM pg_proc p " +
+            "JOIN pg_namespace n ON n.oid = p.pronamespace " +
+            "WHERE n.nspname = ?" + filter.schemaOwnerSql("n", "p.proowner") + " " +
+            "  AND " + strategyFor(conn).plainFunctionFilter() + " " +
+            rowTypeCondition +
+            "  AND NOT EXISTS (SELECT 1 FROM pg_depend e " +
+            "                  WHERE e.classid = 'pg_proc'::regclass " +
+            "                    AND e.objid = p.oid AND e.deptype = 'e') " +
+            "ORDER BY p.proname, p.oid";
+
+        StringBuilder ddl = new StringBuilder();
 
-        List<String> parents = new ArrayList<>();
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, schema);
-            ps.setString(2, table);
+            filter.bindSchemaOwner(ps, 2);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
-                    String pSchema = rs.getString("parent_schema");
-                    String pTable  = rs.getString("parent_table");
-                    parents.add(quoteIdentifier(pSchema) + "." + quoteIdentifier(pTable));
+                    if (ddl.length() == 0) {
+                        ddl.append("SET check_function_bodies = false;\n");
+                    }
+                    ddl.append(rs.getString("funcdef").trim()).append(";\n");
                 }
             }
         }
-        if (parents.isEmpty()) {
-            return "";
-        } else {
-            return String.join(", ", parents);
-        }
-    }
 
-    /**
-     * Если нужно, возвращаем строку с опциями (WITH (...)).
-     */
-    private static String getTableOptions(Connection conn, String schema, String table) throws SQLException {
-        // В оригинальном скрипте вызывалась ddlx_create_table_storage_parameters,
-        // которая проверяла pg_class.reloptions, etc.  
-        // Тут делаем заглушку (верните что нужно).
-        return "";
+        return ddl.toString();
     }
 
+    /* ========================================================================= */
+    /* 7) Комментарии, триггеры и политики RLS всех таблиц схемы                 */
+    /* ========================================================================= */
+
     /**
-     * Если нужно указать TABLESPACE (если он не по умолчанию).
+     * Дополнения к CREATE TABLE / CREATE VIEW для всех таблиц и представлений схемы
+     * за один запрос: COMMENT ON TABLE / VIEW / MATERIALIZED VIEW / COLUMN / CONSTRAINT
+     * (pg_description), CREATE TRIGGER (pg_get_triggerdef, у представлений — INSTEAD OF)
+     * с ENABLE/DISABLE, ENABLE/FORCE ROW LEVEL SECURITY и CREATE POLICY.
+     * Строки группируются по OID отношения на сервере; результат — имя отношения -> DDL.
+     * Выводится последним проходом, когда уже созданы ограничения (COMMENT ON CONSTRAINT),
+     * функции (триггеры, выражения политик) и представления.
      */
-    private static String getTableSpace(Connection conn, String schema, String table) throws SQLException {
-        // В pg_class.relTablespace != 0 => смотрим в pg_tablespace.spcname.
-        // Заглушка:
-        return "";
+    public static Map<String, String> ddlxCreateTableExtras(Connection conn, String schema) throws SQLException {
+        return ddlxCreateTableExtras(conn, schema, ObjectFilter.all());
     }
 
     /**
-     * Упрощённая логика определения типа (varchar(...), numeric(...), и т.п.).
-     * Без учёта SERIAL — ведь мы решаем это в коде выше (где проверяем column_default).
+     * То же, но только для отношений, прошедших фильтр (условие добавляется в WHERE запроса);
+     * внешние таблицы — только при явном --relkind, как и в selectTables.
      */
-    private static String buildColumnType(String dataType, Integer charLength, Integer numericPrecision, Integer numericScale) {
-        // character varying / varchar
-        if ("character varying".equalsIgnoreCase(dataType) || "varchar".equalsIgnoreCase(dataType)) {
-            if (charLength != null) {
-                return "varchar(" + charLength + ")";
-            } else {
-                return "varchar";
+    public static Map<String, String> ddlxCreateTableExtras(Connection conn, String schema, ObjectFilter filter) throws SQLException {
+        CatalogStrategy strategy = strategyFor(conn);
+
+        String sql = 
+            "SELECT c.relname AS table_name, x.stmt " +
+            "FROM pg_class c " +
+            "JOIN pg_namespace n ON n.oid = c.relnamespace " +
+            "CROSS JOIN LATERAL ( " +
+            // комментарии к таблице (представлению) и столбцам
+            "    SELECT 1 AS ord, d.objsubid AS sub, " +
+            "           CASE WHEN d.objsubid = 0 " +
+            "                THEN format('COMMENT ON %s %I.%I IS %L;', " +
+            "                            CASE c.relkind WHEN 'v' THEN 'VIEW' WHEN 'm' THEN 'MATERIALIZED VIEW' " +
+            "                                           WHEN 'f' THEN 'FOREIGN TABLE' ELSE 'TABLE' END, " +
+            "                            n.nspname, c.relname, d.description) " +
+            "                ELSE format('COMMENT ON COLUMN %I.%I.%I IS %L;', n.nspname, c.relname, a.attname, d.description) " +
+            "           END AS stmt " +
+            "      FROM pg_description d " +
+            "      LEFT JOIN pg_attribute a ON a.attrelid = c.oid AND a.attnum = d.objsubid " +
+            "     WHERE d.classoid = 'pg_class'::regclass AND d.objoid = c.oid " +
+            "    UNION ALL " +
+            // комментарии к ограничениям
+            "    SELECT 2, 0, format('COMMENT ON CONSTRAINT %I ON %I.%I IS %L;', " +
+            "                        co.conname, n.nspname, c.relname, d.description) " +
+            "      FROM pg_constraint co " +
+            "      JOIN pg_description d ON d.classoid = 'pg_constraint'::regclass AND d.objoid = co.oid " +
+            "     WHERE co.conrelid = c.oid " +
+            "    UNION ALL " +
+            // триггеры
+            "    SELECT 3, 0, pg_get_triggerdef(t.oid, true) || ';' || " +
+            "           CASE t.tgenabled " +
+            "             WHEN 'D' THEN format(E'\\nALTER TABLE %I.%I DISABLE TRIGGER %I;', n.nspname, c.relname, t.tgname) " +
+            "             WHEN 'R' THEN format(E'\\nALTER TABLE %I.%I ENABLE REPLICA TRIGGER %I;', n.nspname, c.relname, t.tgname) " +
+            "             WHEN 'A' THEN format(E'\\nALTER TABLE %I.%I ENABLE ALWAYS TRIGGER %I;', n.nspname, c.relname, t.tgname) " +
+            "             ELSE '' " +
+            "           END " +
+            "      FROM pg_trigger t " +
+            "     WHERE t.tgrelid = c.oid AND " + strategy.userTriggerFilter() + " " +
+            "    UNION ALL " +
+            // RLS
+            "    SELECT 4, 0, format('ALTER TABLE %I.%I ENABLE ROW LEVEL SECURITY;', n.nspname, c.relname) " +
+            "     WHERE c.relrowsecurity " +
+            "    UNION ALL " +
+            "    SELECT 5, 0, format('ALTER TABLE %I.%I FORCE ROW LEVEL SECURITY;', n.nspname, c.relname) " +
+            "     WHERE c.relforcerowsecurity " +
+            "    UNION ALL " +
+            "    SELECT 6, 0, format('CREATE POLICY %I ON %I.%I%s FOR %s TO %s%s%s;', " +
+            "                        p.policyname, n.nspname, c.relname, " + strategy.policyKindClause() + ", " +
+            "                        p.cmd, " +
+            "                        (SELECT string_agg(CASE WHEN r = 'public' THEN 'PUBLIC' ELSE quote_ident(r) END, ', ') " +
+            "                           FROM unnest(p.roles) r), " +
+            "                        coalesce(' USING (' || p.qual || ')', ''), " +
+            "                        coalesce(' WITH CHECK (' || p.with_check || ')', '')) " +
+            "      FROM pg_policies p " +
+            "     WHERE p.schemaname = n.nspname AND p.tablename = c.relname " +
+            ") x " +
+            "WHERE n.nspname = ? " +
+            "  AND c.relkind IN " + (filter.hasRelkinds() ? "('r','p','f','v','m')" : "('r','p','v','m')") +
+            filter.sql("c", "n") + " " +
+            "ORDER BY c.relname, x.ord, x.sub, x.stmt";
+
+        Map<String, StringBuilder> byTable = new LinkedHashMap<>();
+
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, schema);
+            filter.bind(ps, 2);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    byTable.computeIfAbsent(rs.getString("table_name"), k -> new StringBuilder())
+                           .append(rs.getString("stmt")).append("\n");
+                }
             }
         }
-        // numeric
-        if ("numeric".equalsIgnoreCase(dataType)) {
-            if (numericPrecision != null && numericScale != null) {
-                return "numeric(" + numericPrecision + "," + numericScale + ")";
-            } else if (numericPrecision != null) {
-                return "numeric(" + numericPrecision + ")";
-            } else {
-                return "numeric";
-            }
+
+        Map<String, String> extras = new LinkedHashMap<>();
+        for (Map.Entry<String, StringBuilder> e : byTable.entrySet()) {
+            extras.put(e.getKey(), e.getValue().toString());
         }
-        // ... при необходимости допишите другие типы
-        return dataType;
+        return extras;
     }
 
+    /* ========================================================================= */
+    /* 8) Статистика планировщика (reltuples/relpages и pg_statistic)           */
+    /* ========================================================================= */
+
     /**
-     * Экранируем идентификаторы в двойные кавычки, 
-     * чтобы корректно обрабатывать заглавные буквы, спецсимволы и т.п.
+     * Скрипт, который переносит статистику планировщика таблиц схемы в базу с таким же DDL:
+     * UPDATE pg_class (reltuples, relpages, relallvisible) и строки pg_statistic.
+     *
+     * Ограничение: на пустой копии этого недостаточно, чтобы EXPLAIN совпадал с production.
+     * Число строк планировщик оценивает по фактическому размеру отношения
+     * (RelationGetNumberOfBlocks), а reltuples/relpages служат лишь плотностью строк
+     * на страницу; при 0 блоков оценка — 0 строк. Перенесённые pg_statistic (доля NULL,
+     * MCV, гистограммы) используются, но для оценок размера нужны данные либо расширение,
+     * подменяющее размеры через get_relation_info_hook (например, pg_dbms_stats).
+     *
+     * Читается двумя запросами на всю схему. Чтение pg_statistic и применение скрипта
+     * требуют прав суперпользователя. Значения stavaluesN переносятся как текст массива
+     * и собираются обратно через array_in с типом элемента; операторы — через regoperator,
+     * правила сортировки — по схеме и имени, поэтому скрипт применим к базе той же
+     * мажорной версии.
      */
-    private static String quoteIdentifier(String identifier) {
-        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    public static String ddlxExportStatistics(Connection conn, String schema) throws SQLException {
+        return ddlxExportStatistics(conn, schema, ObjectFilter.all());
     }
 
-    /* ========================================================================= */
-    /* Пример использования                                                      */
-    /* ========================================================================= */
-    public static void main(String[] args) {
-        // Пример, как всё вызвать
-        try (Connection conn = DriverManager.getConnection(
-                "jdbc:postgresql://localhost:5432/testdb", "postgres", "password")) {
+    /**
+     * То же для отношений, прошедших фильтр. Индексы отбираются по своей таблице
+     * (pg_index.indrelid), так что --include-table=foo переносит и статистику индексов foo.
+     */
+    public static String ddlxExportStatistics(Connection conn, String schema, ObjectFilter filter) throws SQLException {
+        StringBuilder ddl = new StringBuilder();
 
-            String schema = "public";
-            String table  = "mytable";
+        // 1. Размеры таблиц, индексов и материализованных представлений
+        String relSql = 
+            "SELECT c.relname, c.reltuples, c.relpages, c.relallvisible " +
+            "FROM pg_class c " +
+            "JOIN pg_namespace n ON n.oid = c.relnamespace " +
+            "LEFT JOIN pg_index x ON x.indexrelid = c.oid " +
+            "JOIN pg_class tc ON tc.oid = coalesce(x.indrelid, c.oid) " +
+            "WHERE n.nspname = ? AND c.relkind IN ('r','p','m','i')" + filter.sql("tc", "n") + " " +
+            "ORDER BY c.relname";
+
+        try (PreparedStatement ps = conn.prepareStatement(relSql)) {
+            ps.setString(1, schema);
+            filter.bind(ps, 2);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String rel = quoteIdentifier(schema) + "." + quoteIdentifier(rs.getString("relname"));
+                    ddl.append("UPDATE pg_catalog.pg_class SET reltuples = ").append(rs.getFloat("reltuples"))
+                       .append(", relpages = ").append(rs.getInt("relpages"))
+                       .append(", relallvisible = ").append(rs.getInt("relallvisible"))
+                       .append(" WHERE oid = ").append(quoteLiteral(rel)).append("::regclass;\n");
+                }
+            }
+        }
 
-            // 1) CREATE TABLE
-            String createTableDDL = ddlxCreateTable(conn, schema, table);
-            System.out.println("-- CREATE TABLE DDL --");
-            System.out.println(createTableDDL);
+        // 2. Статистика по столбцам
+        boolean withCollations = getServerVersionNum(conn) >= 120000; // stacollN появились в PG 12
+
+        StringBuilder slots = new StringBuilder();
+        for (int i = 1; i <= 5; i++) {
+            slots.append(", s.stakind").append(i)
+                 .append(", CASE WHEN s.staop").append(i).append(" = 0 THEN NULL ")
+                 .append("ELSE s.staop").append(i).append("::regoperator::text END AS staop").append(i)
+                 .append(withCollations
+                     ? ", (SELECT cn.nspname FROM pg_collation co JOIN pg_namespace cn ON cn.oid = co.collnamespace " +
+                       "    WHERE co.oid = s.stacoll" + i + ") AS stacollschema" + i +
+                       ", (SELECT co.collname FROM pg_collation co WHERE co.oid = s.stacoll" + i + ") AS stacollname" + i
+                     : "")
+                 .append(", s.stanumbers").append(i).append("::text AS stanumbers").append(i)
+                 .append(", s.stavalues").append(i).append("::text AS stavalues").append(i);
+        }
 
-            // 2) CREATE CONSTRAINTS
-            String createConstraintsDDL = ddlxCreateConstraints(conn, schema, table);
-            System.out.println("-- CREATE CONSTRAINTS DDL --");
-            System.out.println(createConstraintsDDL);
+        String statSql = 
+            "SELECT c.relname, a.attname, s.stainherit, s.stanullfrac, s.stawidth, s.stadistinct, " +
+            "       format_type(a.atttypid, NULL) AS coltype, " +
+            "       format_type(NULLIF(t.typelem, 0), NULL) AS elemtype" + slots + " " +
+            "FROM pg_statistic s " +
+            "JOIN pg_class c ON c.oid = s.starelid " +
+            "JOIN pg_namespace n ON n.oid = c.relnamespace " +
+            "JOIN pg_attribute a ON a.attrelid = s.starelid AND a.attnum = s.staattnum " +
+            "JOIN pg_type t ON t.oid = a.atttypid " +
+            "WHERE n.nspname = ? AND c.relkind IN ('r','p','m')" + filter.sql("c", "n") + " " +
+            "ORDER BY c.relname, a.attnum, s.stainherit";
 
-            // 3) ALTER TABLE DEFAULTS
-            String alterDefaultsDDL = ddlxAlterTableDefaults(conn, schema, table);
-            System.out.println("-- ALTER TABLE DEFAULTS DDL --");
-            System.out.println(alterDefaultsDDL);
+        try (PreparedStatement ps = conn.prepareStatement(statSql)) {
+            ps.setString(1, schema);
+            filter.bind(ps, 2);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String rel = quoteLiteral(quoteIdentifier(schema) + "." + quoteIdentifier(rs.getString("relname")));
+                    String att = quoteLiteral(rs.getString("attname"));
+                    boolean inherit = rs.getBoolean("stainherit");
+
+                    ddl.append("DELETE FROM pg_catalog.pg_statistic WHERE starelid = ").append(rel).append("::regclass")
+                       .append(" AND staattnum = (SELECT attnum FROM pg_catalog.pg_attribute WHERE attrelid = ")
+                       .append(rel).append("::regclass AND attname = ").append(att).append(")")
+                       .append(" AND stainherit = ").append(inherit).append(";\n");
+
+                    StringBuilder cols = new StringBuilder("starelid, staattnum, stainherit, stanullfrac, stawidth, stadistinct");
+                    StringBuilder vals = new StringBuilder();
+                    vals.append(rel).append("::regclass, a.attnum, ").append(inherit)
+                        .append(", ").append(rs.getFloat("stanullfrac"))
+                        .append(", ").append(rs.getInt("stawidth"))
+                        .append(", ").append(rs.getFloat("stadistinct"));
+
+                    for (int i = 1; i <= 5; i++) {
+                        int kind = rs.getInt("stakind" + i);
+                        String op = rs.getString("staop" + i);
+                        String numbers = rs.getString("stanumbers" + i);
+                        String values = rs.getString("stavalues" + i);
+
+                        cols.append(", stakind").append(i).append(", staop").append(i);
+                        vals.append(", ").append(kind)
+                            .append(", ").append(op == null ? "0" : quoteLiteral(op) + "::regoperator::oid");
+                        if (withCollations) {
+                            cols.append(", stacoll").append(i);
+                            vals.append(", ").append(collationOid(
+                                    rs.getString("stacollschema" + i), rs.getString("stacollname" + i)));
+                        }
+                        cols.append(", stanumbers").append(i).append(", stavalues").append(i);
+                        vals.append(", ").append(numbers == null ? "NULL" : quoteLiteral(numbers) + "::real[]")
+                            .append(", ").append(values == null ? "NULL"
+                                : "array_in(" + quoteLiteral(values) + ", "
+                                  + quoteLiteral(statValuesType(kind, rs.getString("coltype"), rs.getString("elemtype")))
+                                  + "::regtype, -1)");
+                    }
 
-            // 4) ALTER OWNER
-            String alterOwnerDDL = ddlxAlterOwner(conn, schema, table);
-            System.out.println("-- ALTER OWNER DDL --");
-            System.out.println(alterOwnerDDL);
+                    ddl.append("INSERT INTO pg_catalog.pg_statistic (").append(cols).append(")")
+                       .append(" SELECT ").append(vals)
+                       .append(" FROM pg_catalog.pg_attribute a WHERE a.attrelid = ").append(rel)
+                       .append("::regclass AND a.attname = ").append(att).append(";\n");
+                }
+            }
+        }
+
+        return ddl.toString();
+    }
+
+    /**
+     * Выражение OID правила сортировки по схеме и имени (OID в другой базе другой) или 0.
+     */
+    private static String collationOid(String schema, String name) {
+        if (name == null) {
+            return "0";
+        }
+        return "(SELECT co.oid FROM pg_catalog.pg_collation co " +
+               "JOIN pg_catalog.pg_namespace cn ON cn.oid = co.collnamespace " +
+               "WHERE cn.nspname = " + quoteLiteral(schema) + " AND co.collname = " + quoteLiteral(name) + " " +
+               "AND co.collencoding IN (-1, pg_catalog.pg_char_to_encoding(pg_catalog.getdatabaseencoding())))";
+    }
+
+    /**
+     * Тип элементов stavaluesN в зависимости от вида слота (stakind):
+     * 4 (MCELEM) — элементы массива, 6 (RANGE_LENGTH_HISTOGRAM) — float8, прочие — тип столбца.
+     */
+    private static String statValuesType(int kind, String columnType, String elementType) {
+        if (kind == 4 && elementType != null) {
+            return elementType;
+        } else if (kind == 6) {
+            return "double precision";
+        }
+        return columnType;
+    }
+
+    /**
+     * Топологическая сортировка: объект выводится только после всех своих зависимостей
+     * из того же набора (зависимости вне набора — таблицы — уже созданы).
+     * При равенстве сохраняется исходный порядок (по имени).
+     */
+    private static List<Long> orderByDependencies(Collection<Long> objects, Map<Long, List<Long>> deps) {
+        List<Long> ordered = new ArrayList<>();
+        Set<Long> emitted = new HashSet<>();
+        Set<Long> visiting = new HashSet<>();
+        for (long oid : objects) {
+            visitDependencies(oid, objects, deps, emitted, visiting, ordered);
+        }
+        return ordered;
+    }
+
+    private static void visitDependencies(long oid, Collection<Long> objects, Map<Long, List<Long>> deps,
+                                          Set<Long> emitted, Set<Long> visiting, List<Long> ordered) {
+        if (emitted.contains(oid) || !visiting.add(oid)) {
+            return; // уже выведен или цикл (в каталоге невозможен, но не зацикливаемся)
+        }
+        for (long ref : deps.getOrDefault(oid, Collections.emptyList())) {
+            if (objects.contains(ref)) {
+                visitDependencies(ref, objects, deps, emitted, visiting, ordered);
+            }
+        }
+        visiting.remove(oid);
+        emitted.add(oid);
+        ordered.add(oid);
+    }
+
+    private static String stripTrailingSemicolon(String sql) {
+        String trimmed = sql.trim();
+        return trimmed.endsWith(";") ? trimmed.substring(0, trimmed.length() - 1) : trimmed;
+    }
+
+    /* ========================================================================= */
+    /* 9) Отбор таблиц по фильтру                                                */
+    /* ========================================================================= */
+
+    /**
+     * Условие на pg_namespace (алиас n): только пользовательские схемы,
+     * без системных, TOAST и временных чужих сеансов.
+     */
+    static final String USER_SCHEMAS =
+        "n.nspname NOT IN ('pg_catalog', 'information_schema') " +
+        "AND n.nspname NOT LIKE 'pg\\_toast%' " +
+        "AND n.nspname NOT LIKE 'pg\\_temp\\_%'";
+
+    /**
+     * Схемы, в которых есть таблицы или представления, прошедшие фильтр (по имени).
+     */
+    public static List<String> selectSchemas(Connection conn, ObjectFilter filter) throws SQLException {
+        String sql =
+            "SELECT DISTINCT n.nspname " +
+            "FROM pg_class c " +
+            "JOIN pg_namespace n ON n.oid = c.relnamespace " +
+            "WHERE " + USER_SCHEMAS + " " +
+            "  AND c.relkind IN " + (filter.hasRelkinds() ? "('r','p','f','v','m') " : "('r','p','v','m') ") +
+            filter.sql("c", "n") + " " +
+            "ORDER BY n.nspname";
+
+        List<String> schemas = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            filter.bind(ps, 1);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    schemas.add(rs.getString("nspname"));
+                }
+            }
+        }
+        return schemas;
+    }
+
+    /**
+     * Таблицы, прошедшие фильтр, — одним запросом к pg_class; условия фильтра
+     * выполняются на сервере. Без явного relkind берутся обычные и секционированные таблицы,
+     * с явным — только таблицы из перечисленных (r, p, f): представления сюда не попадают
+     * даже при --relkind=v, их выгружает ddlxCreateViews с тем же фильтром.
+     * Результат — пары {schema, table}: сначала родители, потом наследники и секции
+     * (по глубине в pg_inherits, в том числе через схемы), внутри уровня — по схеме и имени.
+     */
+    public static List<String[]> selectTables(Connection conn, ObjectFilter filter) throws SQLException {
+        String sql = 
+            "SELECT n.nspname, c.relname, " +
+            "       (WITH RECURSIVE up(oid, depth) AS ( " +
+            "            SELECT c.oid, 0 " +
+            "            UNION ALL " +
+            "            SELECT i.inhparent, u.depth + 1 " +
+            "              FROM up u JOIN pg_inherits i ON i.inhrelid = u.oid) " +
+            "        SELECT max(depth) FROM up) AS depth " +
+            "FROM pg_class c " +
+            "JOIN pg_namespace n ON n.oid = c.relnamespace " +
+            "WHERE " + USER_SCHEMAS + " " +
+            "  AND c.relkind IN " + (filter.hasRelkinds() ? "('r','p','f') " : "('r','p') ") +
+            filter.sql("c", "n") + " " +
+            "ORDER BY depth, n.nspname, c.relname";
+
+        List<String[]> tables = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            filter.bind(ps, 1);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    tables.add(new String[] { rs.getString("nspname"), rs.getString("relname") });
+                }
+            }
+        }
+        return tables;
+    }
+
+    /* ========================================================================= */
+    /* Вспомогательные методы (как в вашем большом коде)                         */
+    /* ========================================================================= */
+
+    /* ------------------------------------------------------------------------- */
+    /* Стратегии запросов к каталогу по версиям                                   */
+    /* ------------------------------------------------------------------------- */
+
+    /**
+     * Стратегия выбирается один раз на соединение (вместе с чтением server_version_num)
+     * и дальше переиспользуется всеми генераторами.
+     */
+    private static final Map<Connection, CatalogStrategy> STRATEGIES =
+        Collections.synchronizedMap(new WeakHashMap<>());
+
+    private static CatalogStrategy strategyFor(Connection conn) throws SQLException {
+        CatalogStrategy strategy = STRATEGIES.get(conn);
+        if (strategy == null) {
+            strategy = newStrategy(readServerVersionNum(conn));
+            STRATEGIES.put(conn, strategy);
+        }
+        return strategy;
+    }
+
+    private static CatalogStrategy newStrategy(int version) {
+        if (version >= 120000) {
+            return new Pg12Strategy(version);
+        } else if (version >= 100000) {
+            return new Pg10Strategy(version);
+        }
+        return new Pg96Strategy(version);
+    }
+
+    /**
+     * Закрепляет за соединением стратегию заданной версии вместо определённой по серверу
+     * (для StrategyGoldenTest: старые и новые запросы к каталогу на одном и том же сервере).
+     * Рендеры при этом тоже видят эту версию через getServerVersionNum.
+     */
+    static void useStrategy(Connection conn, int version) {
+        STRATEGIES.put(conn, newStrategy(version));
+    }
+
+    /**
+     * Запрос столбцов всех таблиц схемы для bulk-режима (см. CompactCatalog).
+     * Колонки те же, что у getColumnDefinitions (кроме type_name), плюс table_name.
+     * Секций нет: как и у getColumnDefinitions, их столбцы берутся от родителя.
+     * Параметры: схема, затем filter.bind(ps, 2).
+     */
+    static String bulkColumnsSql(Connection conn, ObjectFilter filter) throws SQLException {
+        return strategyFor(conn).bulkColumnsSql(filter);
+    }
+
+    /**
+     * bulkColumnsSql со схемой и фильтром, подставленными литералами, без ORDER BY
+     * (для подзапроса в COPY, см. CompactCatalog.loadBinaryCopy).
+     */
+    static String bulkColumnsInlineSql(Connection conn, String schema, ObjectFilter filter) throws SQLException {
+        return strategyFor(conn).bulkColumnsInlineSql(schema, filter);
+    }
+
+    /**
+     * Набор запросов к каталогу, специфичный для мажорной версии PostgreSQL.
+     * Столбцы читаются прямо из pg_attribute (без тяжёлого представления
+     * information_schema.columns); имя типа для одной таблицы рисует format_type в том же
+     * запросе, а bulk-запрос отдаёт только (type_oid, type_mod): компактная модель рисует
+     * различные пары сама (CompactCatalog + TypeNames).
+     * Подклассы подставляют только отличающиеся фрагменты.
+     */
+    private abstract static class CatalogStrategy {
+        final int version;
+        private final String columnsSql;
+        private final String bulkColumnsHead;
+        private final String constraintsSql;
+        private final String defaultsSql;
+        private final String tableInfoSql;
+        private final String storageSql;
+
+        CatalogStrategy(int version) {
+            this.version = version;
+            String columnsSelect =
+                "a.attname AS column_name, " +
+                "       a.atttypid::bigint AS type_oid, a.atttypmod AS type_mod, " +
+                "       CASE WHEN a.attnotnull THEN 'NO' ELSE 'YES' END AS is_nullable, " +
+                "       " + identityColumns() + ", " +
+                "       " + generatedColumn() + ", " +
+                "       " + serialColumn("a", "c") + " AS is_serial ";
+            String columnsFrom =
+                "FROM pg_attribute a " +
+                "JOIN pg_class c ON c.oid = a.attrelid " +
+                "JOIN pg_namespace n ON n.oid = c.relnamespace " +
+                generatedJoin();
+            this.columnsSql =
+                "SELECT " + columnsSelect +
+                "     , format_type(a.atttypid, a.atttypmod) AS type_name " +
+                columnsFrom +
+                "WHERE n.nspname = ? AND c.relname = ? " +
+                "  AND a.attnum > 0 AND NOT a.attisdropped " +
+                "ORDER BY a.attnum";
+            this.bulkColumnsHead =
+                "SELECT c.relname AS table_name, a.attnum, " + columnsSelect +
+                columnsFrom +
+                "WHERE n.nspname = ? AND c.relkind IN ('r','p','f')" + partitionFilter() + " " +
+                "  AND a.attnum > 0 AND NOT a.attisdropped";
+            this.constraintsSql =
+                "SELECT conname, contype, pg_get_constraintdef(c.oid, true) AS condef " +
+                "FROM pg_constraint c " +
+                "JOIN pg_class t ON t.oid = c.conrelid " +
+                "JOIN pg_namespace n ON n.oid = t.relnamespace " +
+                "WHERE n.nspname = ? " +
+                "  AND t.relname = ? " +
+                "  AND contype IN ('p','u','f','c') " +
+                "  AND c.conislocal" + clonedConstraintFilter() + " " +
+                "ORDER BY conname";
+            this.defaultsSql =
+                "SELECT a.attname AS column_name, pg_get_expr(ad.adbin, ad.adrelid) AS column_default, " +
+                "       " + serialColumn("a", "c") + " AS is_serial " +
+                "FROM pg_attrdef ad " +
+                "JOIN pg_attribute a ON a.attrelid = ad.adrelid AND a.attnum = ad.adnum " +
+                "JOIN pg_class c ON c.oid = a.attrelid " +
+                "JOIN pg_namespace n ON n.oid = c.relnamespace " +
+                "WHERE n.nspname = ? AND c.relname = ? " +
+                "  AND a.attnum > 0 AND NOT a.attisdropped" + plainDefaultFilter() + " " +
+                "ORDER BY a.attnum";
+            this.tableInfoSql =
+                "SELECT c.relkind, c.relpersistence, pg_get_userbyid(c.relowner) AS owner, " +
+                partitionColumns() + " " +
+                "FROM pg_class c " +
+                "JOIN pg_namespace n ON n.oid = c.relnamespace " +
+                "WHERE n.nspname = ? AND c.relname = ?";
+            this.storageSql =
+                // reloptions таблицы и её TOAST-таблицы (с префиксом toast.) — одной строкой для WITH (...)
+                "SELECT array_to_string(array_cat(c.reloptions, " +
+                "           (SELECT array_agg('toast.' || o) FROM unnest(tc.reloptions) o)), ', ') AS options, " +
+                "       ts.spcname AS tablespace, " +
+                // STORAGE столбцов, отличающийся от умолчания типа (typstorage)
+                "       (SELECT string_agg(format('ALTER TABLE %I.%I ALTER COLUMN %I SET STORAGE %s;', " +
+                "                                 n.nspname, c.relname, a.attname, " +
+                "                                 CASE a.attstorage WHEN 'p' THEN 'PLAIN' WHEN 'e' THEN 'EXTERNAL' " +
+                "                                                   WHEN 'm' THEN 'MAIN' ELSE 'EXTENDED' END), " +
+                "                          E'\\n' ORDER BY a.attnum) " +
+                "          FROM pg_attribute a " +
+                "          JOIN pg_type t ON t.oid = a.atttypid " +
+                "         WHERE a.attrelid = c.oid AND a.attnum > 0 AND NOT a.attisdropped " +
+                "           AND a.attstorage <> t.typstorage) AS column_storage, " +
+                "       " + columnCompression() + " AS column_compression " +
+                "FROM pg_class c " +
+                "JOIN pg_namespace n ON n.oid = c.relnamespace " +
+                "LEFT JOIN pg_class tc ON tc.oid = c.reltoastrelid " +
+                "LEFT JOIN pg_tablespace ts ON ts.oid = c.reltablespace " +
+                "WHERE n.nspname = ? AND c.relname = ?";
+        }
+
+        /** Запрос столбцов таблицы: параметры (schema, table). */
+        String columnsSql() {
+            return columnsSql;
+        }
+
+        /**
+         * Те же столбцы для всех таблиц схемы разом: параметр (schema), затем параметры
+         * фильтра; + table_name.
+         */
+        String bulkColumnsSql(ObjectFilter filter) {
+            return bulkColumnsHead + filter.sql("c", "n") + " ORDER BY c.relname, a.attnum";
+        }
+
+        /**
+         * Тот же запрос без параметров и без ORDER BY: схема и фильтр подставлены литералами
+         * (для COPY (SELECT ...) TO STDOUT, где параметры не поддерживаются).
+         */
+        String bulkColumnsInlineSql(String schema, ObjectFilter filter) {
+            return bulkColumnsHead.replace("n.nspname = ?", "n.nspname = " + quoteLiteral(schema))
+                 + filter.inlineSql("c", "n");
+        }
+
+        /** Собственные ограничения таблицы: параметры (schema, table). */
+        String constraintsSql() {
+            return constraintsSql;
+        }
+
+        /** DEFAULT столбцов таблицы (pg_attrdef): параметры (schema, table). */
+        String defaultsSql() {
+            return defaultsSql;
+        }
+
+        /** Запрос pg_class о таблице: параметры (schema, table). */
+        String tableInfoSql() {
+            return tableInfoSql;
+        }
+
+        /** Параметры хранения таблицы и столбцов: параметры (schema, table). */
+        String storageSql() {
+            return storageSql;
+        }
+
+        /** is_identity, identity_generation */
+        abstract String identityColumns();
+
+        /** generation_expression */
+        abstract String generatedColumn();
+
+        /** Дополнительный JOIN для generation_expression (или пустая строка). */
+        abstract String generatedJoin();
+
+        /** Условие " AND ..." на pg_attribute a: DEFAULT, а не выражение вычисляемого столбца. */
+        abstract String plainDefaultFilter();
+
+        /** Условие " AND ..." на pg_constraint c: не клон ограничения родителя секции. */
+        abstract String clonedConstraintFilter();
+
+        /** relispartition, partition_bound, partition_key */
+        abstract String partitionColumns();
+
+        /** Условие " AND ..." на pg_class c: не секция (её столбцы берутся от родителя). */
+        abstract String partitionFilter();
+
+        /** Условие на pg_proc p: всё, кроме агрегатов (для них нет pg_get_functiondef). */
+        abstract String plainFunctionFilter();
+
+        /** Условие на pg_trigger t: только пользовательские триггеры самой таблицы. */
+        abstract String userTriggerFilter();
+
+        /** Фрагмент " AS RESTRICTIVE" для CREATE POLICY по строке pg_policies p. */
+        abstract String policyKindClause();
+
+        /** ALTER COLUMN ... SET COMPRESSION для столбцов таблицы c (или NULL). */
+        abstract String columnCompression();
+
+        /** Фрагмент " WITH ..." для GRANT роли по строке pg_auth_members m. */
+        abstract String membershipOptions();
+    }
+
+    /**
+     * PG 9.6: ни IDENTITY, ни декларативного секционирования ещё нет.
+     */
+    private static class Pg96Strategy extends CatalogStrategy {
+        Pg96Strategy(int version) {
+            super(version);
+        }
+
+        @Override
+        String identityColumns() {
+            return "NULL::text AS is_identity, NULL::text AS identity_generation";
+        }
+
+        @Override
+        String generatedColumn() {
+            return "NULL::text AS generation_expression";
+        }
+
+        @Override
+        String generatedJoin() {
+            return "";
+        }
+
+        @Override
+        String plainDefaultFilter() {
+            return "";
+        }
+
+        @Override
+        String clonedConstraintFilter() {
+            return "";
+        }
+
+        @Override
+        String partitionColumns() {
+            return "false AS relispartition, NULL::text AS partition_bound, NULL::text AS partition_key";
+        }
+
+        @Override
+        String partitionFilter() {
+            return "";
+        }
+
+        @Override
+        String plainFunctionFilter() {
+            return "NOT p.proisagg";
+        }
+
+        @Override
+        String userTriggerFilter() {
+            return "NOT t.tgisinternal";
+        }
+
+        @Override
+        String policyKindClause() {
+            return "''"; // в 9.6 все политики PERMISSIVE
+        }
+
+        @Override
+        String columnCompression() {
+            return "NULL::text";
+        }
+
+        @Override
+        String membershipOptions() {
+            return "CASE WHEN m.admin_option THEN ' WITH ADMIN OPTION' ELSE '' END";
+        }
+    }
+
+    /**
+     * PG 10–11: pg_attribute.attidentity и pg_class.relispartition / relpartbound.
+     */
+    private static class Pg10Strategy extends Pg96Strategy {
+        Pg10Strategy(int version) {
+            super(version);
+        }
+
+        @Override
+        String identityColumns() {
+            return "CASE WHEN a.attidentity <> '' THEN 'YES' ELSE 'NO' END AS is_identity, " +
+                   "CASE a.attidentity WHEN 'a' THEN 'ALWAYS' WHEN 'd' THEN 'BY DEFAULT' END AS identity_generation";
+        }
+
+        @Override
+        String partitionColumns() {
+            return "c.relispartition, " +
+                   "CASE WHEN c.relispartition THEN pg_get_expr(c.relpartbound, c.oid, true) END AS partition_bound, " +
+                   "CASE WHEN c.relkind = 'p' THEN pg_get_partkeydef(c.oid) END AS partition_key";
+        }
+
+        @Override
+        String partitionFilter() {
+            return " AND NOT c.relispartition";
+        }
+
+        @Override
+        String clonedConstraintFilter() {
+            // PG 11+: PK, UNIQUE и FK родителя клонируются на секции (pg_constraint.conparentid);
+            // в PG 10 на partitioned-таблицах таких ограничений ещё нет
+            return version >= 110000 ? " AND c.conparentid = 0" : "";
+        }
+
+        @Override
+        String plainFunctionFilter() {
+            // proisagg заменён на prokind в PG 11
+            return version >= 110000 ? "p.prokind <> 'a'" : "NOT p.proisagg";
+        }
+
+        @Override
+        String policyKindClause() {
+            return "CASE WHEN p.permissive = 'RESTRICTIVE' THEN ' AS RESTRICTIVE' ELSE '' END";
+        }
+    }
+
+    /**
+     * PG 12+: дополнительно вычисляемые столбцы (pg_attribute.attgenerated).
+     */
+    private static class Pg12Strategy extends Pg10Strategy {
+        Pg12Strategy(int version) {
+            super(version);
+        }
+
+        @Override
+        String generatedColumn() {
+            return "CASE WHEN a.attgenerated = 's' THEN pg_get_expr(ad.adbin, ad.adrelid) END AS generation_expression";
+        }
+
+        @Override
+        String generatedJoin() {
+            return "LEFT JOIN pg_attrdef ad ON ad.adrelid = a.attrelid AND ad.adnum = a.attnum ";
+        }
+
+        @Override
+        String plainDefaultFilter() {
+            return " AND a.attgenerated = ''";
+        }
+
+        @Override
+        String userTriggerFilter() {
+            // PG 13+: триггеры, клонированные на секции, видны как обычные (tgparentid <> 0)
+            return version >= 130000 ? "NOT t.tgisinternal AND t.tgparentid = 0" : "NOT t.tgisinternal";
+        }
+
+        @Override
+        String columnCompression() {
+            // PG 14+: метод сжатия столбца (pg_attribute.attcompression, '' = по умолчанию)
+            if (version < 140000) {
+                return super.columnCompression();
+            }
+            return "(SELECT string_agg(format('ALTER TABLE %I.%I ALTER COLUMN %I SET COMPRESSION %s;', " +
+                   "                          n.nspname, c.relname, a.attname, " +
+                   "                          CASE a.attcompression WHEN 'l' THEN 'lz4' ELSE 'pglz' END), " +
+                   "                   E'\\n' ORDER BY a.attnum) " +
+                   "   FROM pg_attribute a " +
+                   "  WHERE a.attrelid = c.oid AND a.attnum > 0 AND NOT a.attisdropped " +
+                   "    AND a.attcompression IN ('p', 'l'))";
+        }
+
+        @Override
+        String membershipOptions() {
+            // PG 16+: у членства в роли ещё флаги INHERIT и SET
+            if (version < 160000) {
+                return super.membershipOptions();
+            }
+            // boolean в format() превращается в t/f, а GRANT ждёт TRUE/FALSE
+            return "format(' WITH ADMIN %s, INHERIT %s, SET %s', " +
+                   "CASE WHEN m.admin_option THEN 'TRUE' ELSE 'FALSE' END, " +
+                   "CASE WHEN m.inherit_option THEN 'TRUE' ELSE 'FALSE' END, " +
+                   "CASE WHEN m.set_option THEN 'TRUE' ELSE 'FALSE' END)";
+        }
+    }
+
+    /**
+     * Содержит relkind (p, r и т.п.) и relpersistence ('u' = unlogged, 't' = temp),
+     * а для PG 10+ ещё и сведения о секционировании.
+     */
+    static class TableInfo {
+        String relkind;          // 'r', 'p', ...
+        String relpersistence;   // 'u', 't', ...
+        String owner;            // владелец (приходит тем же запросом)
+        boolean relispartition;  // PG 10+: таблица является секцией
+        String partitionBound;   // PG 10+: FOR VALUES ... (для секции)
+        String partitionKey;     // PG 10+: RANGE (...) / LIST (...) / HASH (...) (для relkind = 'p')
+    }
+
+    /**
+     * Определяем тип таблицы из pg_class + pg_namespace.
+     * Запрос берётся из стратегии версии, так что на PG 10+ в тот же проход
+     * приходят relispartition, границы секции и ключ секционирования.
+     */
+    static TableInfo getTableInfo(Connection conn, String schema, String table) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(tableInfoSql(conn))) {
+            ps.setString(1, schema);
+            ps.setString(2, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                return readTableInfo(rs);
+            }
+        }
+    }
+
+    /** Запрос getTableInfo для версии сервера: параметры (schema, table). */
+    static String tableInfoSql(Connection conn) throws SQLException {
+        return strategyFor(conn).tableInfoSql();
+    }
+
+    static TableInfo readTableInfo(ResultSet rs) throws SQLException {
+        TableInfo info = new TableInfo();
+        if (rs.next()) {
+            info.relkind = rs.getString("relkind");
+            info.relpersistence = rs.getString("relpersistence");
+            info.owner = rs.getString("owner");
+            info.relispartition = rs.getBoolean("relispartition");
+            info.partitionBound = rs.getString("partition_bound");
+            info.partitionKey = rs.getString("partition_key");
+        }
+        return info;
+    }
+
+    /**
+     * Извлекаем владельца таблицы
+     */
+    static String getTableOwner(Connection conn, String schema, String table) throws SQLException {
+        String sql = 
+            "SELECT pg_get_userbyid(relowner) AS owner " +
+            "FROM pg_class c " +
+            "JOIN pg_namespace n ON n.oid = c.relnamespace " +
+            "WHERE n.nspname = ? AND c.relname = ?";
+
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, schema);
+            ps.setString(2, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getString("owner");
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Собираем список определений столбцов с учётом:
+     * - version >= 10 => использовать IDENTITY, иначе SERIAL
+     * - version >= 12 => GENERATED ALWAYS AS (...) STORED
+     * - NOT NULL
+     * - прочие особенности
+     */
+    static List<String> getColumnDefinitions(Connection conn, String schema, String table, int version) throws SQLException {
+        // Сам запрос зависит от версии и выбирается стратегией (см. CatalogStrategy).
+        try (PreparedStatement ps = conn.prepareStatement(columnsSql(conn))) {
+            ps.setString(1, schema);
+            ps.setString(2, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                return readColumnDefinitions(rs, version);
+            }
+        }
+    }
+
+    /** Запрос getColumnDefinitions для версии сервера: параметры (schema, table). */
+    static String columnsSql(Connection conn) throws SQLException {
+        return strategyFor(conn).columnsSql();
+    }
+
+    static List<String> readColumnDefinitions(ResultSet rs, int version) throws SQLException {
+        List<ColumnRow> rows = new ArrayList<>();
+        while (rs.next()) {
+            ColumnRow row = new ColumnRow();
+            row.name          = rs.getString("column_name");
+            row.typeOid       = rs.getLong("type_oid");
+            row.typeName      = rs.getString("type_name");
+            row.isNullable    = rs.getString("is_nullable");
+            row.isIdentity    = rs.getString("is_identity");           // "YES"/"NO" (или null)
+            row.identityGen   = rs.getString("identity_generation");   // "ALWAYS"/"BY DEFAULT" (или null)
+            row.generatedExpr = rs.getString("generation_expression"); // PG 12+ (или null)
+            row.serial        = rs.getBoolean("is_serial");
+            rows.add(row);
+        }
+
+        List<String> columns = new ArrayList<>();
+        for (ColumnRow row : rows) {
+            // Полное имя типа с модификаторами: varchar(20), numeric(10,2), timestamp(3) ..., integer[], домены
+            String columnType = row.typeName;
+
+            // --- Проверяем автоинкремент (IDENTITY или SERIAL) ---
+            String identityClause = "";
+
+            // PG 10+: если is_identity=YES, делаем IDENTITY (в PG < 10 is_identity всегда NULL)
+            if (version >= 100000 && "YES".equalsIgnoreCase(row.isIdentity)) {
+                if ("ALWAYS".equalsIgnoreCase(row.identityGen)) {
+                    identityClause = " GENERATED ALWAYS AS IDENTITY";
+                } else {
+                    identityClause = " GENERATED BY DEFAULT AS IDENTITY";
+                }
+            }
+            // Столбец с неявной последовательностью и DEFAULT nextval(...) => SERIAL/BIGSERIAL/SMALLSERIAL
+            // (см. serialCondition). Параметры и текущее значение выгружает ddlxCreateSequences.
+            else if (row.serial) {
+                columnType = serialTypeFor(row.typeOid, columnType);
+            }
+            // PG 12+: вычисляемый столбец
+            else if (row.generatedExpr != null) {
+                identityClause = " GENERATED ALWAYS AS (" + row.generatedExpr + ") STORED";
+            }
+
+            // Собираем итоговое объявление столбца
+            StringBuilder colDef = new StringBuilder();
+            colDef.append(quoteIdentifier(row.name)).append(" ").append(columnType);
+
+            if (!identityClause.isEmpty()) {
+                colDef.append(identityClause);
+            }
+
+            // NOT NULL (общая логика для всех версий)
+            if ("NO".equalsIgnoreCase(row.isNullable)) {
+                colDef.append(" NOT NULL");
+            }
+
+            // В вашем исходном скрипте DEFAULT выносите в отдельную функцию ddlx_alter_table_defaults,
+            // так что здесь **не** добавляем "DEFAULT ...", если это не IDENTITY/SERIAL.
+            // Но если хотите, можете условно добавить.
+
+            columns.add(colDef.toString());
+        }
+
+        return columns;
+    }
+
+    /**
+     * Строка запроса столбцов до рендеринга.
+     */
+    private static class ColumnRow {
+        String name;
+        long typeOid;
+        String typeName;
+        String isNullable;
+        String isIdentity;
+        String identityGen;
+        String generatedExpr;
+        boolean serial;
+    }
+
+    /**
+     * Проверяем, наследует ли таблица от другой через pg_inherits.
+     */
+    static String getInheritsClause(Connection conn, String schema, String table) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(INHERITS_SQL)) {
+            ps.setString(1, schema);
+            ps.setString(2, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                return readInheritsClause(rs);
+            }
+        }
+    }
+
+    /** Родители таблицы: параметры (schema, table). */
+    static final String INHERITS_SQL = 
+        "SELECT pn.nspname AS parent_schema, pc.relname AS parent_table " +
+        "FROM pg_inherits i " +
+        "JOIN pg_class c ON c.oid = i.inhrelid " +
+        "JOIN pg_class pc ON pc.oid = i.inhparent " +
+        "JOIN pg_namespace pn ON pn.oid = pc.relnamespace " +
+        "JOIN pg_namespace cn ON cn.oid = c.relnamespace " +
+        "WHERE cn.nspname = ? AND c.relname = ? " +
+        "ORDER BY i.inhseqno";
+
+    static String readInheritsClause(ResultSet rs) throws SQLException {
+        List<String> parents = new ArrayList<>();
+        while (rs.next()) {
+            String pSchema = rs.getString("parent_schema");
+            String pTable  = rs.getString("parent_table");
+            parents.add(quoteIdentifier(pSchema) + "." + quoteIdentifier(pTable));
+        }
+        if (parents.isEmpty()) {
+            return "";
+        } else {
+            return String.join(", ", parents);
+        }
+    }
+
+    /**
+     * Параметры хранения: содержимое WITH (...), TABLESPACE и ALTER TABLE ... ALTER COLUMN
+     * ... SET STORAGE / SET COMPRESSION для столбцов, отличающихся от умолчания.
+     */
+    static class TableStorage {
+        String options = "";        // fillfactor=70, autovacuum_..., toast.autovacuum_...
+        String tablespace = "";     // имя табличного пространства, если не по умолчанию
+        String columnStorage = "";  // ALTER TABLE ... ALTER COLUMN ... (по строке на столбец)
+    }
+
+    /**
+     * Читаем pg_class.reloptions таблицы и её TOAST-таблицы, reltablespace,
+     * attstorage и (PG 14+) attcompression — одним запросом.
+     */
+    static TableStorage getTableStorage(Connection conn, String schema, String table) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(storageSql(conn))) {
+            ps.setString(1, schema);
+            ps.setString(2, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                return readTableStorage(rs);
+            }
+        }
+    }
+
+    /** Запрос getTableStorage для версии сервера: параметры (schema, table). */
+    static String storageSql(Connection conn) throws SQLException {
+        return strategyFor(conn).storageSql();
+    }
+
+    static TableStorage readTableStorage(ResultSet rs) throws SQLException {
+        TableStorage storage = new TableStorage();
+        if (rs.next()) {
+            String options = rs.getString("options");
+            String tablespace = rs.getString("tablespace");
+            String columnStorage = rs.getString("column_storage");
+            String columnCompression = rs.getString("column_compression");
+
+            storage.options = options == null ? "" : options;
+            storage.tablespace = tablespace == null ? "" : quoteIdentifier(tablespace);
+
+            StringBuilder columns = new StringBuilder();
+            if (columnStorage != null) {
+                columns.append(columnStorage).append("\n");
+            }
+            if (columnCompression != null) {
+                columns.append(columnCompression).append("\n");
+            }
+            storage.columnStorage = columns.toString();
+        }
+        return storage;
+    }
+
+    /**
+     * Если нужно, возвращаем строку с опциями (WITH (...)).
+     */
+    static String getTableOptions(Connection conn, String schema, String table) throws SQLException {
+        return getTableStorage(conn, schema, table).options;
+    }
+
+    /**
+     * Если нужно указать TABLESPACE (если он не по умолчанию).
+     */
+    static String getTableSpace(Connection conn, String schema, String table) throws SQLException {
+        return getTableStorage(conn, schema, table).tablespace;
+    }
+
+    /**
+     * Тип SERIAL для целочисленного столбца с неявной последовательностью (см. serialCondition).
+     * Для прочих типов возвращаем fallback (столбец остаётся как есть).
+     */
+    static String serialTypeFor(long typeOid, String fallback) {
+        if (typeOid == INT8_OID) {
+            return "bigserial";
+        } else if (typeOid == INT4_OID) {
+            return "serial";
+        } else if (typeOid == INT2_OID) {
+            return "smallserial";
+        }
+        return fallback;
+    }
+
+    /**
+     * Условие «последовательность s — та, что создал бы SERIAL-столбец a таблицы c»: столбец
+     * int2/int4/int8, s лежит в схеме таблицы под именем <таблица>_<столбец>_seq, а DEFAULT
+     * столбца — ровно nextval(s). Только такой столбец можно выгрузить как serial: CREATE TABLE
+     * воссоздаст и последовательность, и DEFAULT. Владение (pg_depend 'a') проверяет вызывающий.
+     * Усечённые до 63 байт или переименованные последовательности сюда не попадают — они
+     * выгружаются как CREATE SEQUENCE ... OWNED BY плюс SET DEFAULT, что тоже восстанавливается.
+     */
+    static String serialCondition(String a, String c, String s) {
+        return "(" + a + ".atttypid IN (" + INT2_OID + ", " + INT4_OID + ", " + INT8_OID + ") " +
+               "AND " + s + ".relkind = 'S' " +
+               "AND " + s + ".relnamespace = " + c + ".relnamespace " +
+               "AND " + s + ".relname = " + c + ".relname || '_' || " + a + ".attname || '_seq' " +
+               "AND EXISTS (SELECT 1 FROM pg_attrdef sad " +
+               "            WHERE sad.adrelid = " + a + ".attrelid AND sad.adnum = " + a + ".attnum " +
+               "              AND pg_get_expr(sad.adbin, sad.adrelid) = " +
+               "                  'nextval(' || quote_literal(" + s + ".oid::regclass::text) || '::regclass)'))";
+    }
+
+    /**
+     * is_serial для столбца a таблицы c: столбец владеет последовательностью, подходящей
+     * под serialCondition.
+     */
+    static String serialColumn(String a, String c) {
+        return "EXISTS (SELECT 1 FROM pg_depend sd " +
+               "        JOIN pg_class ss ON ss.oid = sd.objid " +
+               "        WHERE sd.classid = 'pg_class'::regclass " +
+               "          AND sd.refclassid = 'pg_class'::regclass " +
+               "          AND sd.deptype = 'a' " +
+               "          AND sd.refobjid = " + a + ".attrelid AND sd.refobjsubid = " + a + ".attnum " +
+               "          AND " + serialCondition(a, c, "ss") + ")";
+    }
+
+    /** OID встроенных целочисленных типов (фиксированы в pg_type.dat). */
+    private static final long INT2_OID = 21;
+    private static final long INT4_OID = 23;
+    private static final long INT8_OID = 20;
+
+    /**
+     * Экранируем идентификаторы в двойные кавычки, 
+     * чтобы корректно обрабатывать заглавные буквы, спецсимволы и т.п.
+     */
+    static String quoteIdentifier(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+
+    /**
+     * Экранируем строковый литерал в одинарные кавычки.
+     */
+    static String quoteLiteral(String literal) {
+        return "'" + literal.replace("'", "''") + "'";
+    }
+
+    /* ========================================================================= */
+    /* 11) Пользовательские типы, от которых зависят таблицы                     */
+    /* ========================================================================= */
+
+    /**
+     * CREATE TYPE ... AS ENUM, CREATE DOMAIN и CREATE TYPE ... AS (...) для типов схемы,
+     * которые используют столбцы таблиц (любой схемы), — одним запросом. Зависимости
+     * раскрываются рекурсивно (базовый тип домена, поля составного типа, элемент массива),
+     * так что типы выводятся в порядке создания: сначала те, от которых зависят другие.
+     * Каждый тип выводится только со своей схемой, даже если его используют таблицы
+     * других схем; схемы с такими типами — selectTypeSchemas.
+     * Встроенные типы, типы расширений и строковые типы самих таблиц не выгружаются.
+     */
+    public static String ddlxCreateTypes(Connection conn, String schema) throws SQLException {
+        return ddlxCreateTypes(conn, schema, ObjectFilter.all());
+    }
+
+    /**
+     * То же, но только для типов, которые используют таблицы, прошедшие фильтр.
+     */
+    public static String ddlxCreateTypes(Connection conn, String schema, ObjectFilter filter) throws SQLException {
+        String sql = usedTypesSql(filter) +
+            "SELECT CASE t.typtype " +
+            "         WHEN 'e' THEN format('CREATE TYPE %I.%I AS ENUM (%s);', tn.nspname, t.typname, " +
+            "              (SELECT string_agg(quote_literal(e.enumlabel), ', ' ORDER BY e.enumsortorder) " +
+            "                 FROM pg_enum e WHERE e.enumtypid = t.oid)) " +
+            "         WHEN 'd' THEN format('CREATE DOMAIN %I.%I AS %s%s%s%s%s;', tn.nspname, t.typname, " +
+            "              format_type(t.typbasetype, t.typtypmod), " +
+            "              (SELECT ' COLLATE ' || quote_ident(cn.nspname) || '.' || quote_ident(co.collname) " +
+            "                 FROM pg_collation co JOIN pg_namespace cn ON cn.oid = co.collnamespace " +
+            "                WHERE co.oid = t.typcollation " +
+            "                  AND t.typcollation <> (SELECT bt.typcollation FROM pg_type bt WHERE bt.oid = t.typbasetype)), " +
+            "              coalesce(' DEFAULT ' || t.typdefault, ''), " +
+            "              CASE WHEN t.typnotnull THEN ' NOT NULL' ELSE '' END, " +
+            "              (SELECT string_agg(format(' CONSTRAINT %I %s', dc.conname, pg_get_constraintdef(dc.oid, true)), '' ORDER BY dc.conname) " +
+            "                 FROM pg_constraint dc WHERE dc.contypid = t.oid AND dc.contype = 'c')) " +
+            "         ELSE format('CREATE TYPE %I.%I AS (%s);', tn.nspname, t.typname, " +
+            "              (SELECT string_agg(format('%I %s', ca.attname, format_type(ca.atttypid, ca.atttypmod)), " +
+            "                                 ', ' ORDER BY ca.attnum) " +
+            "                 FROM pg_attribute ca " +
+            "                WHERE ca.attrelid = t.typrelid AND ca.attnum > 0 AND NOT ca.attisdropped)) " +
+            "       END AS ddl " +
+            "FROM ordered o " +
+            "JOIN pg_type t ON t.oid = o.oid " +
+            "JOIN pg_namespace tn ON tn.oid = t.typnamespace " +
+            "WHERE " + USED_TYPE_KINDS + " AND tn.nspname = ? " +
+            "ORDER BY o.depth DESC, t.typname";
+
+        StringBuilder ddl = new StringBuilder();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(filter.bind(ps, 1), schema);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    ddl.append(rs.getString("ddl")).append("\n");
+                }
+            }
+        }
+        return ddl.toString();
+    }
+
+    /**
+     * Схемы, в которых лежат типы, используемые таблицами, прошедшими фильтр, —
+     * по одной на ddlxCreateTypes. Схемы с более глубокими зависимостями (базовые типы
+     * чужих доменов и составных типов) идут первыми.
+     */
+    public static List<String> selectTypeSchemas(Connection conn, ObjectFilter filter) throws SQLException {
+        String sql = usedTypesSql(filter) +
+            "SELECT tn.nspname " +
+            "FROM ordered o " +
+            "JOIN pg_type t ON t.oid = o.oid " +
+            "JOIN pg_namespace tn ON tn.oid = t.typnamespace " +
+            "WHERE " + USED_TYPE_KINDS + " " +
+            "GROUP BY tn.nspname " +
+            "ORDER BY max(o.depth) DESC, tn.nspname";
+
+        List<String> schemas = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            filter.bind(ps, 1);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    schemas.add(rs.getString("nspname"));
+                }
+            }
+        }
+        return schemas;
+    }
+
+    /**
+     * WITH RECURSIVE used / ordered: типы столбцов таблиц всех пользовательских схем,
+     * прошедших фильтр (параметры — filter.bind(ps, 1)), со всеми их зависимостями
+     * и глубиной (depth), по которой типы упорядочиваются для создания.
+     */
+    private static String usedTypesSql(ObjectFilter filter) {
+        return
+            "WITH RECURSIVE used(oid, depth) AS ( " +
+            "    SELECT DISTINCT a.atttypid, 0 " +
+            "      FROM pg_attribute a " +
+            "      JOIN pg_class c ON c.oid = a.attrelid " +
+            "      JOIN pg_namespace n ON n.oid = c.relnamespace " +
+            "     WHERE " + USER_SCHEMAS + " AND c.relkind IN ('r','p','f')" + filter.sql("c", "n") + " " +
+            "       AND a.attnum > 0 AND NOT a.attisdropped " +
+            "    UNION " +
+            "    SELECT dep.oid, u.depth + 1 " +
+            "      FROM used u " +
+            "      JOIN pg_type t ON t.oid = u.oid " +
+            "      CROSS JOIN LATERAL ( " +
+            "          SELECT t.typbasetype WHERE t.typtype = 'd' " +
+            "          UNION ALL " +
+            "          SELECT t.typelem WHERE t.typcategory = 'A' AND t.typelem <> 0 " +
+            "          UNION ALL " +
+            "          SELECT ca.atttypid FROM pg_attribute ca " +
+            "           WHERE t.typtype = 'c' AND ca.attrelid = t.typrelid " +
+            "             AND ca.attnum > 0 AND NOT ca.attisdropped " +
+            "      ) dep(oid) " +
+            "     WHERE u.depth < 32 " +
+            "), " +
+            "ordered AS ( " +
+            "    SELECT oid, max(depth) AS depth FROM used GROUP BY oid " +
+            ") ";
+    }
+
+    /** Условие на pg_type t / pg_namespace tn: выгружаемые пользовательские типы. */
+    private static final String USED_TYPE_KINDS =
+        "t.typtype IN ('e','d','c') " +
+        "AND tn.nspname NOT IN ('pg_catalog', 'information_schema') " +
+        "AND (t.typtype <> 'c' OR (SELECT rc.relkind FROM pg_class rc WHERE rc.oid = t.typrelid) = 'c') " +
+        "AND NOT EXISTS (SELECT 1 FROM pg_depend d " +
+        "                 WHERE d.classid = 'pg_type'::regclass AND d.objid = t.oid AND d.deptype = 'e')";
+
+    /* ========================================================================= */
+    /* 12) Глобальные объекты кластера: роли, членства, табличные пространства   */
+    /* ========================================================================= */
+
+    /**
+     * Параметры-списки (GUC_LIST_QUOTE): в pg_db_role_setting они уже хранятся
+     * в виде готового списка, и брать их в кавычки целиком нельзя.
+     */
+    private static final String LIST_SETTINGS =
+        "'search_path', 'temp_tablespaces', 'session_preload_libraries', " +
+        "'shared_preload_libraries', 'local_preload_libraries', 'unix_socket_directories'";
+
+    /**
+     * Глобальные объекты кластера одним запросом, в порядке восстановления:
+     * 1) роли (CREATE ROLE, если её ещё нет, и ALTER ROLE с атрибутами),
+     * 2) членство в ролях (pg_auth_members),
+     * 3) табличные пространства (владелец — уже созданная роль),
+     * 4) настройки баз и ролей из pg_db_role_setting (ALTER DATABASE / ALTER ROLE ... SET).
+     *
+     * Каталоги общие для всего кластера, так что достаточно одного прохода через любую
+     * базу; выводится перед DDL таблиц, чтобы OWNER TO и GRANT не упирались в отсутствующие
+     * роли. Встроенные роли и табличные пространства pg_* не создаются.
+     * Пароли (pg_authid, нужны права суперпользователя) выгружаются только при includePasswords.
+     * ALTER DATABASE ... SET рассчитан на то, что базы уже созданы на стороне восстановления.
+     */
+    public static String ddlxExportGlobals(Connection conn, boolean includePasswords) throws SQLException {
+        String password = includePasswords
+            ? "(SELECT ' PASSWORD ' || quote_literal(a.rolpassword) FROM pg_authid a " +
+              "  WHERE a.oid = r.oid AND a.rolpassword IS NOT NULL)"
+            : "NULL";
+
+        String sql =
+            "SELECT g.ddl FROM ( " +
+            "    SELECT 1 AS stage, r.rolname::text AS k1, ''::text AS k2, 0::bigint AS k3, " +
+            "           format(E'DO $ddlx$BEGIN CREATE ROLE %I; EXCEPTION WHEN duplicate_object THEN NULL; END$ddlx$;\\n' " +
+            "                  || 'ALTER ROLE %I WITH %s %s %s %s %s %s %s CONNECTION LIMIT %s%s%s;', " +
+            "                  r.rolname, r.rolname, " +
+            "                  CASE WHEN r.rolsuper THEN 'SUPERUSER' ELSE 'NOSUPERUSER' END, " +
+            "                  CASE WHEN r.rolinherit THEN 'INHERIT' ELSE 'NOINHERIT' END, " +
+            "                  CASE WHEN r.rolcreaterole THEN 'CREATEROLE' ELSE 'NOCREATEROLE' END, " +
+            "                  CASE WHEN r.rolcreatedb THEN 'CREATEDB' ELSE 'NOCREATEDB' END, " +
+            "                  CASE WHEN r.rolcanlogin THEN 'LOGIN' ELSE 'NOLOGIN' END, " +
+            "                  CASE WHEN r.rolreplication THEN 'REPLICATION' ELSE 'NOREPLICATION' END, " +
+            "                  CASE WHEN r.rolbypassrls THEN 'BYPASSRLS' ELSE 'NOBYPASSRLS' END, " +
+            "                  r.rolconnlimit, " +
+            "                  coalesce(' VALID UNTIL ' || quote_literal(r.rolvaliduntil::text), ''), " +
+            "                  coalesce(" + password + ", '')) AS ddl " +
+            "      FROM pg_roles r " +
+            "     WHERE r.rolname !~ '^pg_' " +
+            "    UNION ALL " +
+            "    SELECT 2, ro.rolname::text, mo.rolname::text, 0, " +
+            "           format('GRANT %I TO %I%s%s;', ro.rolname, mo.rolname, " +
+            "                  " + strategyFor(conn).membershipOptions() + ", " +
+            "                  CASE WHEN gr.rolname IS NOT NULL AND gr.oid <> 10 " +
+            "                       THEN ' GRANTED BY ' || quote_ident(gr.rolname) ELSE '' END) " +
+            "      FROM pg_auth_members m " +
+            "      JOIN pg_roles ro ON ro.oid = m.roleid " +
+            "      JOIN pg_roles mo ON mo.oid = m.member " +
+            "      LEFT JOIN pg_roles gr ON gr.oid = m.grantor " +
+            "     WHERE mo.rolname !~ '^pg_' " +
+            "    UNION ALL " +
+            "    SELECT 3, t.spcname::text, '', 0, " +
+            "           format('CREATE TABLESPACE %I OWNER %I LOCATION %L;', " +
+            "                  t.spcname, pg_get_userbyid(t.spcowner), pg_tablespace_location(t.oid)) " +
+            "           || CASE WHEN t.spcoptions IS NOT NULL " +
+            "                   THEN format(E'\\nALTER TABLESPACE %I SET (%s);', t.spcname, array_to_string(t.spcoptions, ', ')) " +
+            "                   ELSE '' END " +
+            "      FROM pg_tablespace t " +
+            "     WHERE t.spcname !~ '^pg_' " +
+            "    UNION ALL " +
+            "    SELECT 4, coalesce(d.datname::text, ''), coalesce(r.rolname::text, ''), cfg.ord, " +
+            // setrole = 0 — для всех ролей: ALTER ROLE ALL SET (и setdatabase = 0) или ALTER DATABASE
+            "           CASE WHEN s.setrole = 0 AND s.setdatabase = 0 THEN format('ALTER ROLE ALL SET %s = %s;', cfg.name, cfg.value) " +
+            "                WHEN s.setrole = 0 THEN format('ALTER DATABASE %I SET %s = %s;', d.datname, cfg.name, cfg.value) " +
+            "                WHEN s.setdatabase = 0 THEN format('ALTER ROLE %I SET %s = %s;', r.rolname, cfg.name, cfg.value) " +
+            "                ELSE format('ALTER ROLE %I IN DATABASE %I SET %s = %s;', r.rolname, d.datname, cfg.name, cfg.value) " +
+            "           END " +
+            "      FROM pg_db_role_setting s " +
+            "      LEFT JOIN pg_roles r ON r.oid = s.setrole " +
+            "      LEFT JOIN pg_database d ON d.oid = s.setdatabase " +
+            "      CROSS JOIN LATERAL ( " +
+            "          SELECT u.ord, split_part(u.item, '=', 1) AS name, " +
+            "                 CASE WHEN lower(split_part(u.item, '=', 1)) IN (" + LIST_SETTINGS + ") " +
+            "                       AND substr(u.item, strpos(u.item, '=') + 1) <> '' " +
+            "                      THEN substr(u.item, strpos(u.item, '=') + 1) " +
+            "                      ELSE quote_literal(substr(u.item, strpos(u.item, '=') + 1)) END AS value " +
+            "            FROM unnest(s.setconfig) WITH ORDINALITY AS u(item, ord) " +
+            "      ) cfg " +
+            "     WHERE (s.setrole = 0 OR r.rolname !~ '^pg_') " +
+            "       AND (s.setrole = 0 OR r.oid IS NOT NULL) " +
+            "       AND (s.setdatabase = 0 OR d.oid IS NOT NULL) " +
+            ") g " +
+            "ORDER BY g.stage, g.k1, g.k2, g.k3";
+
+        StringBuilder ddl = new StringBuilder();
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(sql)) {
+            while (rs.next()) {
+                ddl.append(rs.getString("ddl")).append("\n");
+            }
+        }
+        return ddl.toString();
+    }
+
+    /**
+     * Значение аргумента вида --name=value или null.
+     */
+    private static String argValue(String[] args, String prefix) {
+        for (String arg : args) {
+            if (arg.startsWith(prefix)) {
+                return arg.substring(prefix.length());
+            }
+        }
+        return null;
+    }
+
+    /* ========================================================================= */
+    /* Пример использования                                                      */
+    /* ========================================================================= */
+    public static void main(String[] args) {
+        // Пример, как всё вызвать. Аргументы --include-schema=, --include-table= и т.д.
+        // (см. ObjectFilter.fromArgs); без них — public.mytable, как раньше.
+        ObjectFilter filter = ObjectFilter.fromArgs(args);
+        if (filter.isEmpty()) {
+            filter = ObjectFilter.all().includeSchema("public").includeTable("mytable");
+        }
+        // --capacity-sort проверяем до подключения, а не после выгрузки всего DDL
+        CapacityReport.SortBy capacitySort;
+        try {
+            capacitySort = CapacityReport.SortBy.parse(argValue(args, "--capacity-sort="));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+
+        try (Connection conn = DriverManager.getConnection(
+                "jdbc:postgresql://localhost:5432/testdb", "postgres", "password")) {
+
+            // 0) GLOBALS — роли, членства, табличные пространства и настройки, один раз
+            // на кластер и до DDL таблиц (пароли — только с --with-passwords)
+            String globalsDDL = ddlxExportGlobals(conn, Arrays.asList(args).contains("--with-passwords"));
+            System.out.println("-- GLOBALS DDL --");
+            System.out.println(globalsDDL);
+
+            // схема -> отобранные таблицы (одним запросом с условиями фильтра); схемы,
+            // где отобраны только представления, — с пустым списком
+            Map<String, List<String>> tablesBySchema = new LinkedHashMap<>();
+            for (String schema : selectSchemas(conn, filter)) {
+                tablesBySchema.put(schema, new ArrayList<>());
+            }
+            List<String[]> tables = selectTables(conn, filter);
+            for (String[] t : tables) {
+                tablesBySchema.computeIfAbsent(t[0], k -> new ArrayList<>()).add(t[1]);
+            }
+
+            // Первый проход: типы и функции, на которые могут ссылаться столбцы, DEFAULT
+            // и CHECK таблиц (в том числе из других схем).
+            // 0) TYPES (enum, domain, composite) — до таблиц, которые их используют;
+            // каждый тип — со своей схемой, даже если в ней нет отобранных таблиц
+            for (String schema : selectTypeSchemas(conn, filter)) {
+                String typesDDL = ddlxCreateTypes(conn, schema, filter);
+                System.out.println("-- TYPES DDL --");
+                System.out.println(typesDDL);
+            }
+            for (String schema : tablesBySchema.keySet()) {
+                // 0a) FUNCTIONS — тела не проверяются, так что от таблиц зависят только
+                // функции со строковым типом таблицы в сигнатуре (они — после таблиц)
+                String functionsDDL = ddlxCreateFunctions(conn, schema, false, filter);
+                System.out.println("-- FUNCTIONS DDL --");
+                System.out.println(functionsDDL);
+
+                // 0b) SEQUENCES, которые не создаёт CREATE TABLE, — до таблиц и их DEFAULT
+                // nextval(...) (в том числе DEFAULT таблиц других схем)
+                String standaloneSequencesDDL = ddlxCreateSequences(conn, schema, filter, true);
+                System.out.println("-- SEQUENCES DDL --");
+                System.out.println(standaloneSequencesDDL);
+            }
+
+            // Таблицы всех схем — одним проходом, родители раньше наследников и секций
+            // (selectTables); внешние ключи — после всех таблиц, когда есть любая цель ссылки
+            List<TableDefinition> definitions = new ArrayList<>();
+            for (String[] t : tables) {
+                // все разделы таблицы — одним пакетом запросов
+                TableDefinition def = new TableDefinition(conn, t[0], t[1])
+                    .prefetch(EnumSet.allOf(TableDefinition.Part.class));
+                definitions.add(def);
+
+                // 1) CREATE TABLE
+                String createTableDDL = def.createTable();
+                System.out.println("-- CREATE TABLE DDL --");
+                System.out.println(createTableDDL);
+
+                // 2) CREATE CONSTRAINTS (кроме FOREIGN KEY)
+                String createConstraintsDDL = def.constraints(false);
+                System.out.println("-- CREATE CONSTRAINTS DDL --");
+                System.out.println(createConstraintsDDL);
+
+                // 3) ALTER TABLE DEFAULTS
+                String alterDefaultsDDL = def.defaults();
+                System.out.println("-- ALTER TABLE DEFAULTS DDL --");
+                System.out.println(alterDefaultsDDL);
+
+                // 4) ALTER OWNER
+                String alterOwnerDDL = def.alterOwner();
+                System.out.println("-- ALTER OWNER DDL --");
+                System.out.println(alterOwnerDDL);
+            }
+
+            // 4a) FOREIGN KEYS всех таблиц
+            System.out.println("-- FOREIGN KEYS DDL --");
+            for (TableDefinition def : definitions) {
+                System.out.print(def.constraints(true));
+            }
+            System.out.println();
+
+            for (String schema : tablesBySchema.keySet()) {
+                // 5) SEQUENCES: параметры SERIAL и IDENTITY, OWNED BY, текущие значения
+                String sequencesDDL = ddlxCreateSequences(conn, schema, filter, false);
+                System.out.println("-- SEQUENCES DDL --");
+                System.out.println(sequencesDDL);
+
+                // 6) FUNCTIONS со строковым типом таблицы в сигнатуре, затем VIEWS
+                // (после таблиц, от которых зависят)
+                String rowTypeFunctionsDDL = ddlxCreateFunctions(conn, schema, true, filter);
+                System.out.println("-- FUNCTIONS (TABLE ROW TYPES) DDL --");
+                System.out.println(rowTypeFunctionsDDL);
+
+                String viewsDDL = ddlxCreateViews(conn, schema, filter);
+                System.out.println("-- VIEWS DDL --");
+                System.out.println(viewsDDL);
+
+                // 8) Статистика планировщика (pg_class и pg_statistic; оценки размеров на пустой
+                //    копии требуют данных или расширения, см. ddlxExportStatistics)
+                String statisticsDDL = ddlxExportStatistics(conn, schema, filter);
+                System.out.println("-- PLANNER STATISTICS --");
+                System.out.println(statisticsDDL);
+            }
+
+            // Последний проход: COMMENTS / TRIGGERS / RLS — одним запросом на все отобранные
+            // таблицы и представления схемы, когда ограничения, функции и представления уже созданы
+            for (String schema : tablesBySchema.keySet()) {
+                Map<String, String> extras = ddlxCreateTableExtras(conn, schema, filter);
+                System.out.println("-- COMMENTS / TRIGGERS / POLICIES DDL --");
+                for (String relationExtras : extras.values()) {
+                    System.out.print(relationExtras);
+                }
+                System.out.println();
+            }
+
+            // 10) Отчёт о размерах: --capacity-report=<файл DDL> [--capacity-sort=TOTAL_BYTES]
+            String capacityReport = argValue(args, "--capacity-report=");
+            if (capacityReport != null) {
+                CapacityReport.collect(conn, filter, capacitySort)
+                    .writeSidecars(Paths.get(capacityReport));
+            }
 
-        } catch (SQLException e) {
+        } catch (SQLException | IOException e) {
             e.printStackTrace();
         }
     }